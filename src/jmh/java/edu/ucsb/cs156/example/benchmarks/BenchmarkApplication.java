@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application for a benchmark trial, against an in-memory H2 database of its own
+ * and with the job subsystem's scheduled tasks effectively switched off, so that they do not
+ * run during measurements.
+ */
+final class BenchmarkApplication {
+
+  private BenchmarkApplication() {}
+
+  /**
+   * Starts the application.
+   *
+   * @param properties extra properties, as name=value, overriding the defaults
+   * @return the running application; close it at the end of the trial
+   */
+  static ConfigurableApplicationContext start(String... properties) {
+    List<String> args = new ArrayList<>();
+    args.add(
+        "--spring.datasource.url=jdbc:h2:mem:jmh-"
+            + UUID.randomUUID()
+            + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+    args.add("--spring.datasource.username=sa");
+    args.add("--spring.datasource.password=");
+    args.add("--server.port=0");
+    args.add("--logging.level.root=WARN");
+    args.add("--app.jobs.scheduling=fifo");
+    args.add("--app.jobs.executor.queue-capacity=1000000");
+    args.add("--app.jobs.retention.interval-ms=3600000");
+    args.add("--app.jobs.reconcile.interval-ms=3600000");
+    for (String property : properties) {
+      args.add("--" + property);
+    }
+    return SpringApplication.run(ExampleApplication.class, args.toArray(String[]::new));
+  }
+}
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Time for a job to log a number of lines, from its first line until its log is written.
+ *
+ * With store=column each line saves the whole log on the job row, as JobContext's two-argument
+ * constructor does, so the time grows with the square of the number of lines; with store=lines
+ * lines are appended to job_log_lines in batches, as for jobs run by JobService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JobContextLogBenchmark {
+
+  static final String LINE = "Processed record 12345 of the current batch without errors";
+
+  @Param({"100", "1000", "5000"})
+  int lines;
+
+  @Param({"column", "lines"})
+  String store;
+
+  private ConfigurableApplicationContext app;
+  private JobsRepository jobsRepository;
+  private JobLogLinesRepository jobLogLinesRepository;
+  private JobContext ctx;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    app = BenchmarkApplication.start();
+    jobsRepository = app.getBean(JobsRepository.class);
+    jobLogLinesRepository = app.getBean(JobLogLinesRepository.class);
+  }
+
+  @Setup(Level.Invocation)
+  public void createJob() {
+    Job job = jobsRepository.save(Job.builder().status(JobStatus.RUNNING).build());
+    if ("column".equals(store)) {
+      ctx = new JobContext(jobsRepository, job);
+    } else {
+      ctx =
+          JobContext.builder()
+              .jobsRepository(jobsRepository)
+              .jobLogLinesRepository(jobLogLinesRepository)
+              .job(job)
+              .flushLines(100)
+              .flushBytes(65536)
+              .flushIntervalMs(1000)
+              .build();
+    }
+  }
+
+  @Benchmark
+  public void log() {
+    for (int i = 0; i < lines; i++) {
+      ctx.log(LINE);
+    }
+    ctx.flush();
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    app.close();
+  }
+}
@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Time for JobService.getJobLogs to return a job's whole log, read from job_log_lines while
+ * the job runs (store=lines) or from its compressed archive once it has finished
+ * (store=archive).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobLogReadBenchmark {
+
+  @Param({"1000", "10000"})
+  int lines;
+
+  @Param({"lines", "archive"})
+  String store;
+
+  private ConfigurableApplicationContext app;
+  private JobService jobService;
+  private long jobId;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    app = BenchmarkApplication.start("app.jobs.log.compression=gzip");
+    jobService = app.getBean(JobService.class);
+    JobsRepository jobsRepository = app.getBean(JobsRepository.class);
+
+    Job job = jobsRepository.save(Job.builder().status(JobStatus.RUNNING).build());
+    JobContext ctx =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobLogLinesRepository(app.getBean(JobLogLinesRepository.class))
+            .job(job)
+            .flushLines(1000)
+            .flushBytes(1 << 20)
+            .flushIntervalMs(60_000)
+            .build();
+    for (int i = 0; i < lines; i++) {
+      ctx.log(JobContextLogBenchmark.LINE);
+    }
+    ctx.flush();
+    jobId = job.getId();
+
+    if ("archive".equals(store)) {
+      job.setStatus(JobStatus.COMPLETE);
+      jobsRepository.save(job);
+      app.getBean(JobLogCompressor.class).archive(jobId);
+    }
+  }
+
+  @Benchmark
+  public String getJobLogs() {
+    return jobService.getJobLogs(jobId);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    app.close();
+  }
+}
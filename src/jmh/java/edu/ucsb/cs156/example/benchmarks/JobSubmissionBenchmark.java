@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Time for JobService.runAsJob to return, i.e. what a request launching a job waits for; the
+ * job itself runs afterwards, on the executor (queue=memory) or a queue worker (queue=durable).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobSubmissionBenchmark {
+
+  @Param({"memory", "durable"})
+  String queue;
+
+  private ConfigurableApplicationContext app;
+  private JobService jobService;
+  private TestJob testJob;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    app = BenchmarkApplication.start("app.jobs.queue.mode=" + queue);
+    jobService = app.getBean(JobService.class);
+    testJob = TestJob.builder().fail(false).sleepMs(0).build();
+  }
+
+  @Benchmark
+  public Job runAsJob() {
+    return jobService.runAsJob(testJob);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    app.close();
+  }
+}
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * The `JobExecutorConfig` class defines the executor that JobService runs jobs on.
+ *
+ * Jobs get their own pool, separate from Spring's default async executor, with a fixed
+ * number of workers and a bounded queue. When the queue is full new jobs are rejected
+ * rather than piling up, so a burst of launches cannot exhaust threads or DB connections.
+ */
+@Configuration
+public class JobExecutorConfig {
+
+  /** Bean name of the job executor, for use in {@code @Async(JOB_EXECUTOR)}. */
+  public static final String JOB_EXECUTOR = "jobExecutor";
+
+  /**
+   * The executor that jobs run on.
+   *
+   * @param concurrency maximum number of jobs running at once
+   * @param queueCapacity maximum number of jobs waiting for a worker
+   * @param virtualThreads whether workers are virtual threads rather than platform threads
+   * @return the job executor
+   */
+  @Bean(name = JOB_EXECUTOR)
+  public ThreadPoolTaskExecutor jobExecutor(
+      @Value("${app.jobs.executor.concurrency:4}") int concurrency,
+      @Value("${app.jobs.executor.queue-capacity:100}") int queueCapacity,
+      @Value("${app.jobs.executor.virtual-threads:true}") boolean virtualThreads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(concurrency);
+    executor.setMaxPoolSize(concurrency);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("job-");
+    if (virtualThreads) {
+      executor.setThreadFactory(Thread.ofVirtual().name("job-", 1).factory());
+    }
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+}
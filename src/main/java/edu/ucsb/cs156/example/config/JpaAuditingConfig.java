@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * The `JpaAuditingConfig` class turns on Spring Data auditing, which fills in the
+ * {@code @CreatedDate} and {@code @LastModifiedDate} fields of entities such as Job when they
+ * are saved. The retention sweeper relies on these to tell how old a job is.
+ */
+@Configuration
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
+public class JpaAuditingConfig {
+
+  /**
+   * The default provider returns LocalDateTime, which cannot be stored in the ZonedDateTime
+   * fields of our entities.
+   *
+   * @return a provider of the current time as a ZonedDateTime
+   */
+  @Bean
+  public DateTimeProvider auditingDateTimeProvider() {
+    return () -> Optional.of(ZonedDateTime.now());
+  }
+}
@@ -1,6 +1,8 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyConflictException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
@@ -51,4 +53,34 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  /**
+   * This method handles the JobQueueFullException.
+   * @param e the exception
+   * @return a map with the type and message of the exception and the current queue depth
+   */
+  @ExceptionHandler({ JobQueueFullException.class })
+  @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+  public Object handleJobQueueFullException(JobQueueFullException e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage(),
+      "queueDepth", e.getQueueDepth()
+    );
+  }
+
+  /**
+   * This method handles the IdempotencyKeyConflictException.
+   * @param e the exception
+   * @return a map with the type and message of the exception and the id of the job holding the key
+   */
+  @ExceptionHandler({ IdempotencyKeyConflictException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleIdempotencyKeyConflictException(IdempotencyKeyConflictException e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage(),
+      "jobId", e.getJobId()
+    );
+  }
 }
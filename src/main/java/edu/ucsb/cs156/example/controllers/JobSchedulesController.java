@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.models.JobScheduleInfo;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Job Schedules")
+@RequestMapping("/api/jobs/schedules")
+@RestController
+public class JobSchedulesController extends ApiController {
+  @Autowired private JobScheduler jobScheduler;
+
+  @Operation(summary = "List recurring job schedules")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("")
+  public List<JobScheduleInfo> allSchedules() {
+    return jobScheduler.listSchedules();
+  }
+
+  @Operation(summary = "Pause a recurring job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/pause")
+  public Map<String, String> pauseSchedule(
+      @Parameter(name = "name", description = "name of the schedule") @RequestParam String name) {
+    jobScheduler.setPaused(name, true);
+    return Map.of("message", "Job schedule %s paused".formatted(name));
+  }
+
+  @Operation(summary = "Resume a paused recurring job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/resume")
+  public Map<String, String> resumeSchedule(
+      @Parameter(name = "name", description = "name of the schedule") @RequestParam String name) {
+    jobScheduler.setPaused(name, false);
+    return Map.of("message", "Job schedule %s resumed".formatted(name));
+  }
+
+  @Operation(summary = "Run a recurring job schedule now, unless its last run is still going")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/trigger")
+  public Map<String, String> triggerSchedule(
+      @Parameter(name = "name", description = "name of the schedule") @RequestParam String name) {
+    return Map.of("message", jobScheduler.trigger(name));
+  }
+}
@@ -3,24 +3,68 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobArtifact;
+import edu.ucsb.cs156.example.models.JobEvent;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.models.JobMetrics;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusSummary;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobArtifactStore;
+import edu.ucsb.cs156.example.services.jobs.JobEventPublisher;
+import edu.ucsb.cs156.example.services.jobs.JobLogIndexer;
+import edu.ucsb.cs156.example.services.jobs.JobPipeline;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
@@ -29,10 +73,35 @@ import org.springframework.web.bind.annotation.RestController;
 public class JobsController extends ApiController {
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Autowired private JobLogTokensRepository jobLogTokensRepository;
+
+  @Autowired private JobLogIndexer jobLogIndexer;
+
   @Autowired private JobService jobService;
 
+  @Autowired private JobEventPublisher jobEventPublisher;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
   @Autowired ObjectMapper mapper;
 
+  /** Properties that the paged job listing can be sorted by. */
+  static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "status", "createdAt", "updatedAt");
+
+  /** Most matching lines a log search returns. */
+  static final int MAX_SEARCH_LINES = 10_000;
+
+  // request attributes through which Tomcat sends a file with sendfile(), i.e. without copying
+  // it through the JVM
+  static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+  static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+  static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+  static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
   @Operation(summary = "List all jobs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
@@ -41,11 +110,115 @@ public class JobsController extends ApiController {
     return jobs;
   }
 
+  @Operation(
+      summary =
+          "List jobs a page at a time, without their logs (sort by id, status, createdAt or"
+              + " updatedAt)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/paged")
+  public Page<JobSummary> pagedJobs(
+      @Parameter(name = "status", description = "only list jobs with this status")
+          @RequestParam(required = false)
+          String status,
+      @Parameter(name = "createdFrom", description = "only list jobs created at or after this time")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdFrom,
+      @Parameter(name = "createdTo", description = "only list jobs created before this time")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdTo,
+      @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.DESC)
+          Pageable pageable) {
+
+    checkSortable(pageable);
+    JobStatus statusFilter;
+    try {
+      statusFilter = status == null ? null : JobStatus.of(status);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    return jobsRepository.findSummaries(statusFilter, createdFrom, createdTo, pageable);
+  }
+
+  @Operation(
+      summary =
+          "List the current user's jobs a page at a time, without their logs (sort by id,"
+              + " status, createdAt or updatedAt)")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/mine")
+  public Page<JobSummary> myJobs(
+      @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.DESC)
+          Pageable pageable) {
+    checkSortable(pageable);
+    long userId = getCurrentUser().getUser().getId();
+    return jobsRepository.findSummariesByCreatedById(userId, pageable);
+  }
+
+  private static void checkSortable(Pageable pageable) {
+    for (Sort.Order order : pageable.getSort()) {
+      if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+        throw new ResponseStatusException(
+            HttpStatus.BAD_REQUEST, "Cannot sort jobs by " + order.getProperty());
+      }
+    }
+  }
+
+  @Operation(
+      summary =
+          "Search job logs for lines containing every word of q (case-insensitive); returns the"
+              + " matching line numbers of each job, newest job first")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/search")
+  public List<JobLogSearchResult> searchJobLogs(
+      @Parameter(name = "q", description = "words to look for") @RequestParam String q,
+      @Parameter(name = "createdFrom", description = "only search jobs created at or after this time")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdFrom,
+      @Parameter(name = "createdTo", description = "only search jobs created before this time")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdTo,
+      @Parameter(name = "maxLines", description = "maximum number of matching lines to return")
+          @RequestParam(defaultValue = "1000")
+          int maxLines) {
+
+    if (JobLogIndexer.tokens(q).isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query has no words");
+    }
+    return jobLogIndexer.search(q, createdFrom, createdTo, Math.min(maxLines, MAX_SEARCH_LINES));
+  }
+
+  @Operation(
+      summary =
+          "Get job metrics of this node: queue wait, run time and outcomes by job type, and the"
+              + " number of running and queued jobs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/metrics")
+  public JobMetrics jobMetrics() {
+    return jobService.getMetrics();
+  }
+
+  @Operation(
+      summary =
+          "Count jobs by status across all nodes, and find the job that has been running"
+              + " longest")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/summary")
+  public JobStatusSummary jobStatusSummary() {
+    return jobService.getStatusSummary();
+  }
+
   @Operation(summary = "Delete all job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
+    jobsRepository.deleteAllJobs();
+    jobLogLinesRepository.deleteAllLines();
+    jobLogArchivesRepository.deleteAllArchives();
+    jobLogTokensRepository.deleteAllTokens();
+    jobArtifactStore.deleteAll();
     return Map.of("message", "All jobs deleted");
   }
 
@@ -62,6 +235,19 @@ public class JobsController extends ApiController {
     return job;
   }
 
+  @Operation(
+      summary =
+          "Get the status and progress of a job (items done and total, items per second and"
+              + " estimated finishing time) without its log")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/progress")
+  public JobProgress getJobProgress(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    return jobsRepository
+        .findProgressById(id)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+  }
+
   @Operation(summary = "Delete specific job record")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
@@ -70,6 +256,10 @@ public class JobsController extends ApiController {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
     jobsRepository.deleteById(id);
+    jobLogLinesRepository.deleteByJobId(id);
+    jobLogArchivesRepository.deleteByJobIdIn(List.of(id));
+    jobLogTokensRepository.deleteByJobIdIn(List.of(id));
+    jobArtifactStore.delete(List.of(id));
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
@@ -78,19 +268,221 @@ public class JobsController extends ApiController {
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(
+              name = "Idempotency-Key",
+              description = "repeats of a launch with the same key return the same job")
+          @RequestHeader(name = "Idempotency-Key", required = false)
+          String idempotencyKey) {
 
     TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+    return jobService.runAsJob(testJob, idempotencyKey);
+  }
+
+  @Operation(
+      summary =
+          "Launch Test Pipeline: a diamond of four test jobs (click fail to make one branch fail)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/testpipeline")
+  public Job launchTestPipeline(
+      @Parameter(name = "fail") @RequestParam Boolean fail,
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+
+    TestJob step = TestJob.builder().fail(false).sleepMs(sleepMs).build();
+    JobPipeline pipeline =
+        JobPipeline.builder()
+            .step("start", step)
+            .step("left", TestJob.builder().fail(fail).sleepMs(sleepMs).build(), "start")
+            .step("right", step, "start")
+            .step("join", step, "left", "right")
+            .build();
+    return jobService.runPipeline(pipeline);
+  }
+
+  @Operation(summary = "Cancel a pending or running job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/cancel")
+  public Map<String, String> cancelJob(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    return Map.of("message", jobService.cancelJob(id));
   }
 
 
   @Operation(summary = "Get long job logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public ResponseEntity<?> getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+          String acceptEncoding) {
+
+    // compressed logs are sent as stored to clients that accept gzip
+    if (acceptsGzip(acceptEncoding)) {
+      Optional<byte[]> compressed = jobService.getCompressedJobLogs(id);
+      if (compressed.isPresent()) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+            .body(compressed.get());
+      }
+    }
+    return ResponseEntity.ok()
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .body(jobService.getJobLogs(id));
+  }
 
-    return jobService.getJobLogs(id);
+  /**
+   * Whether an Accept-Encoding header lists gzip with a non-zero quality, e.g. "gzip, deflate"
+   * or "gzip;q=0.5" but not "gzip;q=0".
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+        continue;
+      }
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.regionMatches(true, 0, "q=", 0, 2)) {
+          try {
+            quality = Double.parseDouble(param.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      return quality > 0;
+    }
+    return false;
+  }
+
+  @Operation(summary = "Get the lines of a job log from an offset onwards, for incremental polling")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/{id}/tail")
+  public JobLogTail tailJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "line number to start from (nextOffset of the previous call)")
+          @RequestParam(defaultValue = "0")
+          Long offset,
+      @Parameter(name = "maxLines", description = "maximum number of lines to return")
+          @RequestParam(defaultValue = "1000")
+          Integer maxLines) {
+
+    return jobService.tailJobLogs(id, offset, maxLines);
+  }
+
+  @Operation(summary = "List the artifacts (result files) a job has saved")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/artifacts")
+  public List<JobArtifact> listArtifacts(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    return jobArtifactStore.list(id);
+  }
+
+  @Operation(
+      summary =
+          "Download an artifact of a job; supports Range requests for a single byte range, e.g."
+              + " to resume an interrupted download")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/artifact")
+  public void downloadArtifact(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id,
+      @Parameter(name = "name", description = "name of the artifact") @RequestParam String name,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+
+    Path file =
+        jobArtifactStore
+            .find(id, name)
+            .orElseThrow(
+                () -> new EntityNotFoundException(JobArtifact.class, "%d/%s".formatted(id, name)));
+    long length = Files.size(file);
+    long start = 0;
+    long end = length - 1;
+
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+    if (rangeHeader != null) {
+      List<HttpRange> ranges;
+      try {
+        ranges = HttpRange.parseRanges(rangeHeader);
+      } catch (IllegalArgumentException e) {
+        ranges = List.of(); // a malformed Range header is ignored
+      }
+      // several ranges are sent as the whole file, which RFC 9110 allows
+      if (ranges.size() == 1) {
+        try {
+          start = ranges.get(0).getRangeStart(length);
+          end = ranges.get(0).getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+          start = length;
+        }
+        if (start >= length || start > end) {
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+          response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+          return;
+        }
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(
+            HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(start, end, length));
+      }
+    }
+
+    long count = end - start + 1;
+    response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    response.setHeader(
+        HttpHeaders.CONTENT_DISPOSITION,
+        ContentDisposition.attachment().filename(name).build().toString());
+    response.setContentLengthLong(count);
+    if (count == 0) return;
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+      request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START_ATTR, start);
+      request.setAttribute(SENDFILE_END_ATTR, end + 1);
+      return;
+    }
+    // without sendfile (e.g. over TLS) the file is still streamed, never read into memory
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      while (position <= end) {
+        long sent = channel.transferTo(position, end + 1 - position, out);
+        if (sent <= 0) break; // the file was truncated
+        position += sent;
+      }
+    }
+  }
+
+  @Operation(
+      summary =
+          "Stream log lines and status changes of jobs as Server-Sent Events (all jobs if no ids"
+              + " are given)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobs(
+      @Parameter(name = "ids", description = "IDs of the jobs to watch")
+          @RequestParam(defaultValue = "")
+          List<Long> ids) {
+
+    SseEmitter emitter = jobEventPublisher.subscribe(ids);
+    for (Long id : ids) {
+      jobsRepository
+          .findStatusById(id)
+          .ifPresent(
+              status ->
+                  jobEventPublisher.send(
+                      emitter,
+                      JobEventPublisher.STATUS_EVENT,
+                      JobEvent.builder().jobId(id).status(status).build()));
+    }
+    return emitter;
   }
 
 
@@ -27,7 +27,7 @@ public class Job {
   @CreatedDate private ZonedDateTime createdAt;
   @LastModifiedDate private ZonedDateTime updatedAt;
 
-  private String status;
+  private JobStatus status;
 
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
@@ -35,4 +35,65 @@ public class Job {
       length = 1048576) // needed for long strings, i.e. log entries longer than 255
   // characters
   private String log;
+
+  // Jobs in the durable queue record the class of their JobContextConsumer and its
+  // parameters as JSON, so that any node can run them.
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT")
+  private String jobParams;
+
+  // Lease of the node running a queued job. These are only changed by the claim and
+  // heartbeat queries in JobsRepository, never by saving the entity, so that a save with a
+  // stale copy of the job cannot shorten a lease.
+  @Column(insertable = false, updatable = false)
+  private String workerId;
+
+  @Column(insertable = false, updatable = false)
+  private ZonedDateTime heartbeatAt;
+
+  @Column(insertable = false, updatable = false)
+  private int attempts;
+
+  // Set by JobsRepository.requestCancel so that the node running the job stops it, even when
+  // that is not the node that received the cancel request.
+  @Column(insertable = false, updatable = false)
+  private boolean cancelRequested;
+
+  // Progress reported with JobContext.progress; items done of total, the recent rate in items
+  // per second, and when the job should finish at that rate. Written only by
+  // JobsRepository.updateProgress, so that saving the job does not undo newer progress.
+  @Column(insertable = false, updatable = false)
+  private Long progressDone;
+
+  @Column(insertable = false, updatable = false)
+  private Long progressTotal;
+
+  @Column(insertable = false, updatable = false)
+  private Double progressRate;
+
+  @Column(insertable = false, updatable = false)
+  private ZonedDateTime progressEta;
+
+  // State saved with JobContext.checkpoint, from which a job run again after its node stopped
+  // carries on. Written only by JobsRepository.saveCheckpoint, like the progress above.
+  @JsonIgnore
+  @Column(columnDefinition = "TEXT", insertable = false, updatable = false)
+  private String checkpoint;
+
+  @Column(insertable = false, updatable = false)
+  private ZonedDateTime checkpointAt;
+
+  // Steps of a pipeline (see JobService.runPipeline) are jobs of their own, pointing at the
+  // job that stands for the whole pipeline.
+  private Long parentJobId;
+
+  private String stepName;
+
+  // Set when the job was submitted with an idempotency key (see JobService.runAsJob). The key
+  // is unique, so of two concurrent submissions with the same key only one can save its job;
+  // requestHash identifies the job function and parameters the key was first used with.
+  private String idempotencyKey;
+
+  @JsonIgnore private String requestHash;
 }
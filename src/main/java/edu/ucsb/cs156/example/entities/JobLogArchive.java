@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that holds the whole log of a finished job, gzip-compressed.
+ *
+ * When log compression is on, a job's JobLogLine rows are replaced by one of these once the
+ * job ends. data is the gzip of the log exactly as JobService.getJobLogs returns it, i.e. the
+ * lines joined by newlines, so it can be sent as-is to clients that accept gzip.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_archives")
+public class JobLogArchive {
+  @Id private long jobId;
+
+  private long lineCount;
+
+  // size of the log in bytes (UTF-8) before compression
+  private long rawBytes;
+
+  private byte[] data;
+}
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents a single line of output written by a job.
+ *
+ * Lines are append-only; the log of a job is its lines in order of seq.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_lines")
+public class JobLogLine {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_log_lines_seq")
+  @SequenceGenerator(
+      name = "job_log_lines_seq",
+      sequenceName = "JOB_LOG_LINES_SEQ",
+      allocationSize = 50) // must match incrementBy in JobLogLines.json
+  private long id;
+
+  private long jobId;
+
+  // 0-based position of the line within the job's log
+  private long seq;
+
+  private ZonedDateTime loggedAt;
+
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String message;
+}
@@ -0,0 +1,54 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import java.io.Serializable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * This is a JPA entity for one entry of the inverted index over job logs: the word token
+ * occurs in line seq of the log of job jobId.
+ *
+ * Entries are written by JobLogIndexer as log lines are written, and are kept when a log is
+ * archived, so archived logs can still be searched.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_log_tokens")
+@IdClass(JobLogToken.Key.class)
+public class JobLogToken implements Persistable<JobLogToken.Key> {
+  @Id private String token;
+
+  @Id private long jobId;
+
+  @Id private long seq;
+
+  /** The primary key of a JobLogToken. */
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Key implements Serializable {
+    private String token;
+    private long jobId;
+    private long seq;
+  }
+
+  @Override
+  public Key getId() {
+    return new Key(token, jobId, seq);
+  }
+
+  // entries are only ever inserted, so saving one never has to look for an existing row
+  @Override
+  public boolean isNew() {
+    return true;
+  }
+}
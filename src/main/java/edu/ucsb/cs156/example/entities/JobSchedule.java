@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that holds the state of a recurring job schedule, shared by all nodes.
+ *
+ * The schedules themselves (cron expression and job) are registered with JobScheduler on each
+ * node; this row records whether the schedule is paused and which job it last started, so
+ * that a run is neither started twice for the same cron slot nor while the last run is still
+ * going.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_schedules")
+public class JobSchedule {
+  @Id private String name;
+
+  private boolean paused;
+
+  private Long lastJobId;
+
+  private ZonedDateTime lastFiredAt;
+}
@@ -0,0 +1,69 @@
+package edu.ucsb.cs156.example.entities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Status of a job. Stored in the jobs table, and sent to clients, as the lowercase value, e.g.
+ * "running".
+ */
+public enum JobStatus {
+  /** Saved but not started yet, e.g. waiting in the durable queue. */
+  PENDING("pending"),
+  RUNNING("running"),
+  COMPLETE("complete"),
+  ERROR("error"),
+  CANCELLED("cancelled");
+
+  private final String value;
+
+  JobStatus(String value) {
+    this.value = value;
+  }
+
+  @JsonValue
+  public String getValue() {
+    return value;
+  }
+
+  /** @return whether a job with this status has finished running */
+  public boolean isFinished() {
+    return this == COMPLETE || this == ERROR || this == CANCELLED;
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+
+  /**
+   * Looks up a status by its value.
+   *
+   * @param value the lowercase value, e.g. "running"
+   * @return the status
+   * @throws IllegalArgumentException if there is no status with this value
+   */
+  @JsonCreator
+  public static JobStatus of(String value) {
+    for (JobStatus status : values()) {
+      if (status.value.equals(value)) return status;
+    }
+    throw new IllegalArgumentException("Unknown job status: " + value);
+  }
+
+  /** Maps job statuses to and from their values in the database. */
+  @Converter(autoApply = true)
+  public static class JpaConverter implements AttributeConverter<JobStatus, String> {
+    @Override
+    public String convertToDatabaseColumn(JobStatus status) {
+      return status == null ? null : status.value;
+    }
+
+    @Override
+    public JobStatus convertToEntityAttribute(String value) {
+      return value == null ? null : of(value);
+    }
+  }
+}
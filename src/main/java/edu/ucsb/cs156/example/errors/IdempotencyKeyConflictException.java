@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.errors;
+
+import lombok.Getter;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that a job was submitted with an idempotency key already used for a different job.
+ */
+@Getter
+public class IdempotencyKeyConflictException extends RuntimeException {
+  private final long jobId;
+
+  /**
+   * Constructor for the exception
+   *
+   * @param idempotencyKey the key
+   * @param jobId id of the job the key was first used for
+   */
+  public IdempotencyKeyConflictException(String idempotencyKey, long jobId) {
+    super(
+        "Idempotency key %s was already used for job %d with different parameters"
+            .formatted(idempotencyKey, jobId));
+    this.jobId = jobId;
+  }
+}
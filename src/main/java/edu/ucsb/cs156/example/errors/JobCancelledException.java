@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is thrown inside a running
+ * job when the job has been cancelled or has run past its timeout, so that the job stops at
+ * its next cancellation check.
+ */
+public class JobCancelledException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param reason why the job was stopped, e.g. "Job cancelled"
+   */
+  public JobCancelledException(String reason) {
+    super(reason);
+  }
+}
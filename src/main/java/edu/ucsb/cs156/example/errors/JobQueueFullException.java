@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.errors;
+
+import lombok.Getter;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that a job could not be started because the job executor's queue is full.
+ */
+@Getter
+public class JobQueueFullException extends RuntimeException {
+  private final int queueDepth;
+
+  /**
+   * Constructor for the exception
+   *
+   * @param queueDepth the number of jobs waiting in the queue when the job was rejected
+   */
+  public JobQueueFullException(int queueDepth) {
+    super("Job queue is full (%d jobs waiting); try again later".formatted(queueDepth));
+    this.queueDepth = queueDepth;
+  }
+}
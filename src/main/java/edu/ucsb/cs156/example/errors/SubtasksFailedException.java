@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.errors;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is thrown by
+ * JobContext.fork when one or more subtasks of a job fail. Every failure is attached as a
+ * suppressed exception.
+ */
+public class SubtasksFailedException extends RuntimeException {
+  private final Map<String, Throwable> failures;
+
+  /**
+   * Constructor for the exception
+   *
+   * @param failures what each failed subtask threw, by subtask name
+   * @param subtaskCount how many subtasks were run
+   */
+  public SubtasksFailedException(Map<String, Throwable> failures, int subtaskCount) {
+    super(
+        "%d of %d subtasks failed: %s"
+            .formatted(failures.size(), subtaskCount, String.join(", ", failures.keySet())));
+    this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    failures.values().forEach(this::addSuppressed);
+  }
+
+  /** @return what each failed subtask threw, by subtask name, in the order they were forked */
+  public Map<String, Throwable> getFailures() {
+    return failures;
+  }
+}
@@ -3,10 +3,14 @@ package edu.ucsb.cs156.example.jobs;
 import edu.ucsb.cs156.example.services.jobs.JobContext;
 import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
 import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 @Builder
+@Jacksonized // so that the durable job queue can store and rebuild it as JSON
+@Getter
 public class TestJob implements JobContextConsumer {
 
   private boolean fail;
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for a summary of a histogram of durations, in milliseconds.
+ *
+ * Percentiles are bucket upper bounds, so they may overstate the true value by up to 12.5%.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class HistogramSnapshot {
+  private long count;
+  private double meanMs;
+  private long p50Ms;
+  private long p90Ms;
+  private long p99Ms;
+  private long maxMs;
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for a result file a job saved with JobContext.writeArtifact. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobArtifact {
+  private long jobId;
+  private String name;
+  private long size;
+  private ZonedDateTime savedAt;
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for an event pushed to clients watching jobs: either a new log line
+ * (seq and message set), a change of status (status set) or new progress (progress set).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobEvent {
+  private long jobId;
+  private Long seq;
+  private String message;
+  private JobStatus status;
+  private JobProgress progress;
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for the search results in one job's log: the line numbers (0-based,
+ * as in /api/jobs/logs/{id}/tail) of the lines that match.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogSearchResult {
+  private long jobId;
+  private List<Long> lines;
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for the lines of a job's log from a given offset onwards.
+ *
+ * Clients poll by passing nextOffset back as the offset of their next request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogTail {
+  private long jobId;
+  private long offset; // line number of the first entry in lines
+  private List<String> lines;
+  private long nextOffset; // offset to request next time
+  private JobStatus status;
+  private boolean running; // not finished yet, i.e. pending or running; keep polling
+}
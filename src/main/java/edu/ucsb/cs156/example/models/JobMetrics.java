@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for the job metrics of this node, by job type (the simple class name
+ * of the job, e.g. TestJob), together with how many jobs are running and waiting right now.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobMetrics {
+  private int running; // jobs running on this node
+  private int queued; // jobs waiting for a worker in this node's executor
+  private long pending; // jobs waiting in the durable queue, across all nodes
+  private Map<String, JobTypeMetrics> types;
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for how far a job has got, as reported with JobContext.progress.
+ *
+ * done and total are null until the job first reports progress; itemsPerSecond and eta are
+ * null until there are two reports to estimate them from.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobProgress {
+  private long jobId;
+  private JobStatus status;
+  private Long done;
+  private Long total;
+  private Double itemsPerSecond;
+  private ZonedDateTime eta;
+}
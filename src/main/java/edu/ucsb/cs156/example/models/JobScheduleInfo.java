@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for a recurring job schedule as listed to admins: its cron expression,
+ * whether it is paused, and the job it last started.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobScheduleInfo {
+  private String name;
+  private String cron;
+  private boolean paused;
+  private Long lastJobId;
+  private JobStatus lastJobStatus;
+  private ZonedDateTime lastFiredAt;
+  private ZonedDateTime nextFireAt;
+}
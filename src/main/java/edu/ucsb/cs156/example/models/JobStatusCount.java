@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for the number of jobs with one status, and the oldest of them; ids are
+ * assigned in the order jobs are created, so oldestJobId is the id of the oldest job.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobStatusCount {
+  private JobStatus status;
+  private long count;
+  private Long oldestJobId;
+  private ZonedDateTime oldestCreatedAt;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for how many jobs there are with each status, across all nodes, and
+ * which running job has been running longest, e.g. for monitoring stuck jobs.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobStatusSummary {
+  private Map<String, Long> counts; // every status, including those with no jobs, to number of jobs
+  private long total;
+  private Long oldestRunningJobId; // null if no job is running
+  private ZonedDateTime oldestRunningCreatedAt;
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for one row of the paged job listing.
+ *
+ * It holds only the small columns of a job, so that listing jobs never reads their logs;
+ * logLength is the number of lines in the job's log; the progress fields are those of Job.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobSummary {
+  private long id;
+  private JobStatus status;
+  private ZonedDateTime createdAt;
+  private ZonedDateTime updatedAt;
+  private Long createdById;
+  private long logLength;
+  private Long progressDone;
+  private Long progressTotal;
+  private Double progressRate;
+  private ZonedDateTime progressEta;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for the metrics of one type of job on this node: how long its jobs
+ * waited to start, how long they ran, and how many ended with each status.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobTypeMetrics {
+  private HistogramSnapshot queueWait;
+  private HistogramSnapshot runTime;
+  private Map<String, Long> outcomes; // final status, or "rejected", to number of jobs
+}
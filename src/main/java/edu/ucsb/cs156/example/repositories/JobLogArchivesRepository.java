@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JobLogArchivesRepository is a repository for JobLogArchive entities, keyed by job id.
+ */
+@Repository
+public interface JobLogArchivesRepository extends CrudRepository<JobLogArchive, Long> {
+  /**
+   * This method deletes the archived logs of several jobs with a single statement.
+   * @param jobIds ids of the jobs
+   * @return the number of archives deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_archives a where a.jobId in :jobIds")
+  int deleteByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method deletes the archived logs of every job with a single statement.
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_archives")
+  void deleteAllArchives();
+}
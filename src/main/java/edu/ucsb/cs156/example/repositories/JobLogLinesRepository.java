@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JobLogLinesRepository is a repository for JobLogLine entities.
+ */
+@Repository
+public interface JobLogLinesRepository extends CrudRepository<JobLogLine, Long> {
+  /**
+   * This method returns the text of every log line of a job, in the order they were logged.
+   * @param jobId id of the job
+   * @return the log lines of the job
+   */
+  @Query("select l.message from job_log_lines l where l.jobId = :jobId order by l.seq")
+  List<String> findMessagesByJobId(long jobId);
+
+  /**
+   * This method returns the text of the log lines of a job starting at a given line number.
+   * @param jobId id of the job
+   * @param fromSeq line number (0-based) of the first line to return
+   * @param pageable limits how many lines are returned
+   * @return the log lines of the job from fromSeq onwards, in order
+   */
+  @Query(
+      "select l.message from job_log_lines l where l.jobId = :jobId and l.seq >= :fromSeq"
+          + " order by l.seq")
+  List<String> findMessagesByJobIdFromSeq(long jobId, long fromSeq, Pageable pageable);
+
+  /**
+   * This method returns the line number of the last log line of a job.
+   * @param jobId id of the job
+   * @return Optional of the highest seq (empty if the job has not logged anything)
+   */
+  @Query("select max(l.seq) from job_log_lines l where l.jobId = :jobId")
+  Optional<Long> findMaxSeqByJobId(long jobId);
+
+  /**
+   * This method deletes all log lines of a job with a single statement.
+   * @param jobId id of the job
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_lines l where l.jobId = :jobId")
+  void deleteByJobId(long jobId);
+
+  /**
+   * This method deletes all log lines of several jobs with a single statement.
+   * @param jobIds ids of the jobs
+   * @return the number of lines deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_lines l where l.jobId in :jobIds")
+  int deleteByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method deletes the log lines of every job with a single statement.
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_lines")
+  void deleteAllLines();
+}
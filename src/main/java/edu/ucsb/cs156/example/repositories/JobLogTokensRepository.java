@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogToken;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JobLogTokensRepository is a repository for JobLogToken entities, the inverted index
+ * over job logs.
+ */
+@Repository
+public interface JobLogTokensRepository extends CrudRepository<JobLogToken, JobLogToken.Key> {
+  /**
+   * This method returns the log lines that contain every one of the given tokens, newest job
+   * first. It only reads the index, whose primary key starts with the token.
+   * @param tokens the tokens, all distinct
+   * @param tokenCount the number of tokens
+   * @param createdFrom only search jobs created at or after this time, ignored when null
+   * @param createdTo only search jobs created before this time, ignored when null
+   * @param pageable limits how many lines are returned
+   * @return the matching lines
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobLogMatch(t.jobId, t.seq)"
+          + " from job_log_tokens t where t.token in :tokens"
+          + " and (:createdFrom is null and :createdTo is null or t.jobId in"
+          + " (select j.id from jobs j where (:createdFrom is null or j.createdAt >= :createdFrom)"
+          + " and (:createdTo is null or j.createdAt < :createdTo)))"
+          + " group by t.jobId, t.seq having count(t.token) = :tokenCount"
+          + " order by t.jobId desc, t.seq")
+  List<JobLogMatch> findLinesContainingAll(
+      Collection<String> tokens,
+      long tokenCount,
+      ZonedDateTime createdFrom,
+      ZonedDateTime createdTo,
+      Pageable pageable);
+
+  /**
+   * This method deletes the index entries of several jobs with a single statement.
+   * @param jobIds ids of the jobs
+   * @return the number of entries deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_tokens t where t.jobId in :jobIds")
+  int deleteByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method deletes the index entries of every job with a single statement.
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_tokens")
+  void deleteAllTokens();
+}
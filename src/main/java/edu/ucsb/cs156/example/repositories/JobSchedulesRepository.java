@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JobSchedulesRepository is a repository for JobSchedule entities, keyed by name.
+ */
+@Repository
+public interface JobSchedulesRepository extends CrudRepository<JobSchedule, String> {
+  /**
+   * This method loads a schedule and locks its row until the end of the transaction, so that
+   * only one node at a time decides whether to start a run.
+   * @param name name of the schedule
+   * @return Optional of the schedule (empty if there is none with that name)
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from job_schedules s where s.name = :name")
+  Optional<JobSchedule> findByNameForUpdate(String name);
+
+  /**
+   * This method pauses or resumes a schedule.
+   * @param name name of the schedule
+   * @param paused whether the schedule should be paused
+   * @return the number of schedules updated
+   */
+  @Modifying
+  @Transactional
+  @Query("update job_schedules s set s.paused = :paused where s.name = :name")
+  int setPaused(String name, boolean paused);
+}
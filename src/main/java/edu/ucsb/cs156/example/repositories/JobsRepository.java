@@ -1,8 +1,316 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusCount;
+import edu.ucsb.cs156.example.models.JobSummary;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+  /**
+   * Select clause of the queries returning JobSummary objects. It reads the id of the job's
+   * creator from the jobs table's created_by_id column, without joining or loading the user.
+   */
+  String SUMMARY_SELECT =
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, j.status, j.createdAt,"
+          + " j.updatedAt, j.createdBy.id,"
+          + " coalesce((select max(l.seq) + 1 from job_log_lines l where l.jobId = j.id),"
+          + " (select a.lineCount from job_log_archives a where a.jobId = j.id), 0L),"
+          + " j.progressDone, j.progressTotal, j.progressRate, j.progressEta)";
+
+  /**
+   * This method returns the status of a job without loading the rest of the row.
+   * @param id id of the job
+   * @return Optional of the status (empty if the job does not exist)
+   */
+  @Query("select j.status from jobs j where j.id = :id")
+  Optional<JobStatus> findStatusById(long id);
+
+  /**
+   * This method returns the job a user submitted with an idempotency key; keys are unique per
+   * user, so different users may use the same key.
+   * @param createdById id of the user who submitted the job
+   * @param idempotencyKey the key
+   * @return Optional of the job (empty if no job of the user holds the key)
+   */
+  Optional<Job> findByCreatedByIdAndIdempotencyKey(Long createdById, String idempotencyKey);
+
+  /**
+   * This method frees the idempotency key of a job, so that a new job can be submitted with it.
+   * @param id id of the job
+   * @param idempotencyKey the key the job is expected to hold
+   * @return the number of jobs updated (0 if the job no longer holds the key)
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.idempotencyKey = null"
+          + " where j.id = :id and j.idempotencyKey = :idempotencyKey")
+  int releaseIdempotencyKey(long id, String idempotencyKey);
+
+  /**
+   * This method returns the status and progress of a job without loading the rest of the row.
+   * @param id id of the job
+   * @return Optional of the progress (empty if the job does not exist)
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobProgress(j.id, j.status, j.progressDone,"
+          + " j.progressTotal, j.progressRate, j.progressEta) from jobs j where j.id = :id")
+  Optional<JobProgress> findProgressById(long id);
+
+  /**
+   * This method records the progress of a running job.
+   * @param id id of the job
+   * @param done items done
+   * @param total items in all
+   * @param rate items done per second recently, or null if not known yet
+   * @param eta when the job should finish, or null if not known yet
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.progressDone = :done, j.progressTotal = :total,"
+          + " j.progressRate = :rate, j.progressEta = :eta where j.id = :id")
+  int updateProgress(long id, long done, long total, Double rate, ZonedDateTime eta);
+
+  /**
+   * This method saves the checkpoint of a running job, replacing any earlier one.
+   * @param id id of the job
+   * @param checkpoint the job's state, or null to clear it
+   * @param checkpointAt the time of the checkpoint, or null when clearing it
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.checkpoint = :checkpoint, j.checkpointAt = :checkpointAt"
+          + " where j.id = :id")
+  int saveCheckpoint(long id, String checkpoint, ZonedDateTime checkpointAt);
+
+  /**
+   * This method counts the jobs with a given status.
+   * @param status the status
+   * @return the number of jobs with that status
+   */
+  long countByStatus(JobStatus status);
+
+  /**
+   * This method counts the jobs with each status, and finds the oldest job with each status,
+   * in one pass over the (status, created_at) index.
+   * @return one JobStatusCount for each status that some job has
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobStatusCount(j.status, count(j), min(j.id),"
+          + " min(j.createdAt)) from jobs j group by j.status")
+  List<JobStatusCount> countJobsByStatus();
+
+  /**
+   * This method locks and returns the id of the oldest queued job that no node is running:
+   * either pending, or running on a node whose lease expired. Rows locked by other nodes are
+   * skipped rather than waited for. Must be called in the same transaction as
+   * {@link #claim(long, String, ZonedDateTime)}.
+   * @param leaseExpiredBefore running jobs whose last heartbeat is older than this are claimable
+   * @return Optional of the job id (empty if there is nothing to claim)
+   */
+  @Query(
+      value =
+          "SELECT id FROM jobs WHERE job_type IS NOT NULL AND cancel_requested = FALSE"
+              + " AND (status = 'pending'"
+              + " OR (status = 'running' AND heartbeat_at < :leaseExpiredBefore))"
+              + " ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  Optional<Long> findNextClaimableJobId(ZonedDateTime leaseExpiredBefore);
+
+  /**
+   * This method marks a queued job as running on a node.
+   * @param id id of the job
+   * @param workerId id of the node claiming the job
+   * @param now the time of the claim, which starts the lease
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Query(
+      "update jobs j set j.status = RUNNING, j.workerId = :workerId, j.heartbeatAt = :now,"
+          + " j.attempts = j.attempts + 1 where j.id = :id")
+  int claim(long id, String workerId, ZonedDateTime now);
+
+  /**
+   * This method extends the leases of the jobs a node is running. Jobs run in memory have no
+   * node recorded until their first heartbeat, which records this one.
+   * @param workerId id of the node
+   * @param ids ids of the jobs the node is running
+   * @param now the time of the heartbeat
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.heartbeatAt = :now, j.workerId = :workerId"
+          + " where (j.workerId = :workerId or j.workerId is null) and j.id in :ids")
+  int heartbeat(String workerId, Collection<Long> ids, ZonedDateTime now);
+
+  /**
+   * This method returns the ids of running jobs whose node has stopped sending heartbeats,
+   * oldest first. Jobs that have not had a heartbeat yet are judged by when they were last
+   * saved.
+   * @param leaseExpiredBefore jobs whose last sign of life is older than this are returned
+   * @param pageable limits how many ids are returned
+   * @return ids of the orphaned jobs
+   */
+  @Query(
+      "select j.id from jobs j where j.status = RUNNING"
+          + " and coalesce(j.heartbeatAt, j.updatedAt, j.createdAt) < :leaseExpiredBefore"
+          + " order by j.id")
+  List<Long> findOrphanedJobIds(ZonedDateTime leaseExpiredBefore, Pageable pageable);
+
+  /**
+   * This method takes an orphaned job away from its node, provided it is still orphaned.
+   * @param id id of the job
+   * @param status the job's new status: pending to run it again, or error or cancelled
+   * @param leaseExpiredBefore as for {@link #findOrphanedJobIds(ZonedDateTime, Pageable)}
+   * @return the number of jobs updated (0 if the job is no longer orphaned)
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = :status, j.workerId = null, j.heartbeatAt = null"
+          + " where j.id = :id and j.status = RUNNING"
+          + " and coalesce(j.heartbeatAt, j.updatedAt, j.createdAt) < :leaseExpiredBefore")
+  int abandon(long id, JobStatus status, ZonedDateTime leaseExpiredBefore);
+
+  /**
+   * This method puts a job claimed by a node back in the queue, e.g. because the node is
+   * shutting down. The claim does not count as an attempt to run the job.
+   * @param id id of the job
+   * @param workerId id of the node that claimed it
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = PENDING, j.workerId = null, j.heartbeatAt = null,"
+          + " j.attempts = j.attempts - 1 where j.id = :id and j.workerId = :workerId")
+  int release(long id, String workerId);
+
+  /**
+   * This method cancels a job that is still waiting in the durable queue.
+   * @param id id of the job
+   * @return the number of jobs updated (0 if the job is not pending)
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = CANCELLED, j.cancelRequested = true"
+          + " where j.id = :id and j.status = PENDING")
+  int cancelPending(long id);
+
+  /**
+   * This method marks a job as running, unless it is no longer pending, e.g. because it was
+   * cancelled while it waited.
+   * @param id id of the job
+   * @return the number of jobs updated (0 if the job is not pending)
+   */
+  @Modifying
+  @Transactional
+  @Query("update jobs j set j.status = RUNNING where j.id = :id and j.status = PENDING")
+  int startPending(long id);
+
+  /**
+   * This method asks whichever node is running a job to stop it.
+   * @param id id of the job
+   * @return the number of jobs updated (0 if the job is not running)
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.cancelRequested = true where j.id = :id and j.status = RUNNING")
+  int requestCancel(long id);
+
+  /**
+   * This method returns which of the given jobs have been asked to stop.
+   * @param ids ids of the jobs to check
+   * @return ids of the jobs with a pending cancel request
+   */
+  @Query("select j.id from jobs j where j.id in :ids and j.cancelRequested = true")
+  List<Long> findCancelRequestedIds(Collection<Long> ids);
+
+  /**
+   * This method returns the ids of finished jobs last updated before a cutoff, oldest first.
+   * Jobs that have never had a timestamp set are not returned.
+   * @param statuses statuses of the jobs to return, e.g. complete and error
+   * @param cutoff jobs last updated (or, failing that, created) before this are returned
+   * @param pageable limits how many ids are returned
+   * @return ids of the matching jobs
+   */
+  @Query(
+      "select j.id from jobs j where j.status in :statuses"
+          + " and coalesce(j.updatedAt, j.createdAt) < :cutoff order by j.id")
+  List<Long> findIdsByStatusInAndUpdatedBefore(
+      Collection<JobStatus> statuses, ZonedDateTime cutoff, Pageable pageable);
+
+  /**
+   * This method deletes jobs with a single statement, without loading them.
+   * @param ids ids of the jobs to delete
+   * @return the number of jobs deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from jobs j where j.id in :ids")
+  int deleteByIds(Collection<Long> ids);
+
+  /**
+   * This method deletes every job with a single statement, without loading them.
+   * @return the number of jobs deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from jobs")
+  int deleteAllJobs();
+
+  /**
+   * This method returns a page of jobs as JobSummary objects, without reading their logs.
+   * Each filter is ignored when null.
+   * @param status only return jobs with this status
+   * @param createdFrom only return jobs created at or after this time
+   * @param createdTo only return jobs created before this time
+   * @param pageable page number, size and sort order; sort properties are those of Job
+   * @return the page of job summaries
+   */
+  @Query(
+      value =
+          SUMMARY_SELECT
+              + " from jobs j where (:status is null or j.status = :status)"
+              + " and (:createdFrom is null or j.createdAt >= :createdFrom)"
+              + " and (:createdTo is null or j.createdAt < :createdTo)",
+      countQuery =
+          "select count(j) from jobs j where (:status is null or j.status = :status)"
+              + " and (:createdFrom is null or j.createdAt >= :createdFrom)"
+              + " and (:createdTo is null or j.createdAt < :createdTo)")
+  Page<JobSummary> findSummaries(
+      JobStatus status, ZonedDateTime createdFrom, ZonedDateTime createdTo, Pageable pageable);
+
+  /**
+   * This method returns a page of the jobs created by one user as JobSummary objects, without
+   * reading their logs, using the (created_by_id, id) index.
+   * @param createdById id of the user
+   * @param pageable page number, size and sort order; sort properties are those of Job
+   * @return the page of job summaries
+   */
+  @Query(
+      value = SUMMARY_SELECT + " from jobs j where j.createdBy.id = :createdById",
+      countQuery = "select count(j) from jobs j where j.createdBy.id = :createdById")
+  Page<JobSummary> findSummariesByCreatedById(long createdById, Pageable pageable);
+}
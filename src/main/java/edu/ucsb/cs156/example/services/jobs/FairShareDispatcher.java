@@ -0,0 +1,212 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shares the job executor fairly between the users who start jobs, used by JobService when
+ * app.jobs.scheduling is fair-share.
+ *
+ * Jobs wait here, in one queue per user, rather than in the executor's FIFO queue, and are
+ * handed to the executor only when one of its app.jobs.executor.concurrency workers is free.
+ * The next job to run is the oldest job of the user with the fewest jobs running, taking
+ * users with equal counts in turn, and no user runs more than
+ * app.jobs.fair-share.max-running-per-user jobs at once. So a user who starts hundreds of jobs
+ * no longer holds up one who starts a single job: that job runs as soon as any worker frees
+ * up. Every worker is kept busy while jobs are waiting, as before, unless all of them belong
+ * to users at their cap.
+ *
+ * At most app.jobs.executor.queue-capacity jobs wait in all; beyond that submit() throws a
+ * JobQueueFullException, as the executor does in FIFO mode.
+ */
+@Service
+@Slf4j
+public class FairShareDispatcher {
+  @Lazy @Autowired private JobService jobService;
+
+  @Value("${app.jobs.executor.concurrency:4}")
+  private int concurrency;
+
+  @Value("${app.jobs.executor.queue-capacity:100}")
+  private int queueCapacity;
+
+  /** Most jobs one user may have running at once, or 0 for no limit besides concurrency. */
+  @Value("${app.jobs.fair-share.max-running-per-user:0}")
+  private int maxRunningPerUser;
+
+  private record Waiting(Job job, JobContextConsumer jobFunction, CompletableFuture<Job> done) {}
+
+  // all guarded by this
+  private final Map<Long, Deque<Waiting>> queues = new HashMap<>();
+  private final Deque<Long> turns = new ArrayDeque<>(); // users with waiting jobs, in turn order
+  private final Map<Long, Integer> runningByUser = new HashMap<>();
+  private int running = 0;
+  private int queued = 0;
+
+  /**
+   * Queues a job and runs it when its turn comes.
+   *
+   * @param job the job, saved as running
+   * @param jobFunction the job function
+   * @return a future completed when the job has finished
+   * @throws JobQueueFullException if app.jobs.executor.queue-capacity jobs are already waiting
+   */
+  public synchronized CompletableFuture<Job> submit(Job job, JobContextConsumer jobFunction) {
+    if (queued >= queueCapacity) {
+      throw new JobQueueFullException(queued);
+    }
+    Long user = userOf(job);
+    Waiting waiting = new Waiting(job, jobFunction, new CompletableFuture<>());
+    queues.computeIfAbsent(user, u -> new ArrayDeque<>()).addLast(waiting);
+    if (!turns.contains(user)) {
+      turns.addLast(user);
+    }
+    queued++;
+    dispatch();
+    return waiting.done();
+  }
+
+  /**
+   * Takes a job that is still waiting for its turn out of its queue, and runs an action on it
+   * in place of the job function, such as marking it cancelled. The future returned by submit()
+   * completes once the action has run.
+   *
+   * @param jobId id of the job
+   * @param instead what to do with the job instead of running it
+   * @return whether the job was waiting; false if it has started or was never queued here
+   */
+  public boolean remove(long jobId, Consumer<Job> instead) {
+    Waiting waiting = take(jobId);
+    if (waiting == null) {
+      return false;
+    }
+    try {
+      instead.accept(waiting.job());
+      waiting.done().complete(waiting.job());
+    } catch (RuntimeException e) {
+      waiting.done().completeExceptionally(e);
+      throw e;
+    }
+    return true;
+  }
+
+  private synchronized Waiting take(long jobId) {
+    for (Map.Entry<Long, Deque<Waiting>> entry : queues.entrySet()) {
+      Deque<Waiting> queue = entry.getValue();
+      for (Waiting waiting : queue) {
+        if (waiting.job().getId() == jobId) {
+          queue.remove(waiting);
+          if (queue.isEmpty()) {
+            queues.remove(entry.getKey());
+            turns.remove(entry.getKey());
+          }
+          queued--;
+          return waiting;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** @return the number of jobs waiting for their turn */
+  public synchronized int queuedCount() {
+    return queued;
+  }
+
+  /** @return the number of jobs waiting for their turn, by id of the user who started them */
+  public synchronized Map<Long, Integer> queuedByUser() {
+    Map<Long, Integer> counts = new HashMap<>();
+    queues.forEach((user, queue) -> counts.put(user, queue.size()));
+    return counts;
+  }
+
+  /**
+   * Starts waiting jobs, in turn, while workers are free. Also runs every
+   * app.jobs.fair-share.dispatch-interval-ms to retry jobs that the executor turned away
+   * because it was busy with jobs from elsewhere, such as the durable queue.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.fair-share.dispatch-interval-ms:1000}")
+  public synchronized void dispatch() {
+    while (running < concurrency) {
+      Long user = nextUser();
+      if (user == null) return;
+
+      Deque<Waiting> queue = queues.get(user);
+      Waiting next = queue.pollFirst();
+      turns.remove(user);
+      if (queue.isEmpty()) {
+        queues.remove(user);
+      } else {
+        turns.addLast(user);
+      }
+      queued--;
+      running++;
+      runningByUser.merge(user, 1, Integer::sum);
+
+      try {
+        jobService
+            .runJobAsync(next.job(), next.jobFunction())
+            .whenComplete((job, e) -> finished(user, next, e));
+      } catch (TaskRejectedException e) {
+        log.info("Job executor full, job {} waits for its next turn", next.job().getId());
+        stopped(user);
+        queued++;
+        queues.computeIfAbsent(user, u -> new ArrayDeque<>()).addFirst(next);
+        turns.remove(user);
+        turns.addFirst(user);
+        return;
+      }
+    }
+  }
+
+  /** @return the waiting user, under their cap, with the fewest jobs running; null if none */
+  private Long nextUser() {
+    Long next = null;
+    int fewest = Integer.MAX_VALUE;
+    for (Long user : turns) {
+      int userRunning = runningByUser.getOrDefault(user, 0);
+      if (userRunning < fewest && (maxRunningPerUser <= 0 || userRunning < maxRunningPerUser)) {
+        next = user;
+        fewest = userRunning;
+      }
+    }
+    return next;
+  }
+
+  private void finished(Long user, Waiting waiting, Throwable e) {
+    synchronized (this) {
+      stopped(user);
+      dispatch();
+    }
+    if (e != null) {
+      waiting.done().completeExceptionally(e);
+    } else {
+      waiting.done().complete(waiting.job());
+    }
+  }
+
+  private void stopped(Long user) {
+    running--;
+    if (runningByUser.merge(user, -1, Integer::sum) <= 0) {
+      runningByUser.remove(user);
+    }
+  }
+
+  /** @return the id of the user who started a job, or 0 for jobs started by no one */
+  static Long userOf(Job job) {
+    return job.getCreatedBy() == null ? 0L : job.getCreatedBy().getId();
+  }
+}
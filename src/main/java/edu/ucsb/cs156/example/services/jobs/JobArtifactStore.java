@@ -0,0 +1,160 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobArtifact;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the result files of jobs ("artifacts") on disk, outside the jobs table, so that large
+ * results never pass through the database or the heap. Each job's artifacts are files in a
+ * directory of their own, app.jobs.artifacts.dir/JOB_ID/NAME; with several nodes, that
+ * directory must be shared between them.
+ *
+ * An artifact is written to a temporary file and moved into place once complete, so readers
+ * never see part of an artifact, and a job that fails while writing one leaves nothing behind.
+ */
+@Service
+@Slf4j
+public class JobArtifactStore {
+  /** Names may not start with a dot, so that they cannot name the temporary files. */
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,254}");
+
+  private static final String TEMP_SUFFIX = ".part";
+
+  private final Path dir;
+
+  public JobArtifactStore(
+      @Value("${app.jobs.artifacts.dir:${java.io.tmpdir}/job-artifacts}") String dir) {
+    this.dir = Path.of(dir);
+  }
+
+  /**
+   * Saves an artifact, replacing any artifact of the job with the same name.
+   *
+   * @param jobId id of the job
+   * @param name name of the artifact: letters, digits, dots, dashes and underscores
+   * @param writer writes the content
+   * @return the saved artifact
+   * @throws IllegalArgumentException if the name is not allowed
+   * @throws Exception whatever the writer throws, in which case nothing is saved
+   */
+  public JobArtifact save(long jobId, String name, JobArtifactWriter writer) throws Exception {
+    Path target = path(jobId, name);
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), ".artifact-", TEMP_SUFFIX);
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+        writer.write(out);
+      }
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return artifact(jobId, target);
+  }
+
+  /**
+   * @param jobId id of the job
+   * @param name name of the artifact
+   * @return the file holding the artifact, or empty if the job has no such artifact
+   */
+  public Optional<Path> find(long jobId, String name) {
+    if (!NAME.matcher(name).matches()) return Optional.empty();
+    Path file = path(jobId, name);
+    return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+  }
+
+  /**
+   * @param jobId id of the job
+   * @return the job's artifacts, by name
+   */
+  public List<JobArtifact> list(long jobId) {
+    Path jobDir = dir.resolve(Long.toString(jobId));
+    if (!Files.isDirectory(jobDir)) return List.of();
+    try (Stream<Path> files = Files.list(jobDir)) {
+      return files
+          .filter(file -> NAME.matcher(file.getFileName().toString()).matches())
+          .map(file -> artifact(jobId, file))
+          .sorted(Comparator.comparing(JobArtifact::getName))
+          .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Deletes the artifacts of jobs. Failures are logged rather than thrown, as the jobs
+   * themselves are deleted in any case.
+   *
+   * @param jobIds ids of the jobs
+   */
+  public void delete(Collection<Long> jobIds) {
+    for (Long jobId : jobIds) {
+      deleteTree(dir.resolve(Long.toString(jobId)));
+    }
+  }
+
+  /** Deletes the artifacts of every job. */
+  public void deleteAll() {
+    if (!Files.isDirectory(dir)) return;
+    List<Path> jobDirs = new ArrayList<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      files.forEach(jobDirs::add);
+    } catch (IOException e) {
+      log.warn("Could not list job artifacts in {}", dir, e);
+    }
+    jobDirs.forEach(this::deleteTree);
+  }
+
+  private Path path(long jobId, String name) {
+    if (name == null || !NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid artifact name: " + name);
+    }
+    return dir.resolve(Long.toString(jobId)).resolve(name);
+  }
+
+  private JobArtifact artifact(long jobId, Path file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return JobArtifact.builder()
+          .jobId(jobId)
+          .name(file.getFileName().toString())
+          .size(attributes.size())
+          .savedAt(
+              ZonedDateTime.ofInstant(
+                  attributes.lastModifiedTime().toInstant(), ZoneId.systemDefault()))
+          .build();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void deleteTree(Path root) {
+    if (!Files.exists(root)) return;
+    try (Stream<Path> files = Files.walk(root)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      log.warn("Could not delete job artifacts in {}", root, e);
+    }
+  }
+}
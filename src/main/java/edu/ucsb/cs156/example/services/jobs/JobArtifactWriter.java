@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.io.OutputStream;
+
+/** Writes the content of an artifact; see {@link JobContext#writeArtifact}. */
+@FunctionalInterface
+public interface JobArtifactWriter {
+  void write(OutputStream out) throws Exception;
+}
@@ -1,20 +1,698 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.errors.SubtasksFailedException;
+import edu.ucsb.cs156.example.models.JobArtifact;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 
-@AllArgsConstructor
+/**
+ * The context a running job logs through.
+ *
+ * When built with flushLines greater than 1 the context is buffered: log lines are collected
+ * in memory and written to job_log_lines in a single batch once flushLines lines or flushBytes
+ * bytes (UTF-8) are pending, or flushIntervalMs has passed since the last write. Callers must call
+ * {@link #flush()} when the job ends so that no lines are lost.
+ *
+ * firstSeq is the line number of the first line logged through this context; it is non-zero
+ * when a job that has already logged is run again.
+ *
+ * Lines logged with {@link #log(String)} can be limited, so that a job logging in a tight loop
+ * cannot flood the database: with collapseRepeats a line identical to the one before it is
+ * counted instead of written, at most maxLinesPerSecond lines are written per second, and no
+ * more lines are written once maxLogBytes have been logged. Lines held back are
+ * summarized in the log, e.g. "Suppressed 12,340 lines: more than 100 lines per second", before
+ * the next line written and when the job ends.
+ *
+ * If a JobLogIndexer is given, lines are added to the log search index as they are written.
+ *
+ * If a JobEventPublisher is given, every line is also pushed to live subscribers as soon as it
+ * is logged, whether or not it has been written yet.
+ *
+ * Jobs are cancelled cooperatively: {@link #cancel(String, boolean)} marks the context as
+ * cancelled and interrupts the thread running the job, and the next call to {@link #log(String)}
+ * or {@link #checkCancelled()} throws a JobCancelledException. Long-running jobs that do not log
+ * should call checkCancelled() now and then.
+ *
+ * Jobs report how far they have got with {@link #progress(long, long)}. Progress is kept on the
+ * Job and written to the database at most once per progressIntervalMs, with an estimate of
+ * the job's throughput and finishing time, so that jobs can report it as often as they like.
+ *
+ * Long-running jobs can save their state now and then with {@link #checkpoint(String)}. A job
+ * that is run again after its node stopped finds its last checkpoint in
+ * {@link #getCheckpoint()}, and can carry on from there instead of starting over.
+ *
+ * Jobs save results too large for the log, e.g. exports, with
+ * {@link #writeArtifact(String, JobArtifactWriter)}; artifacts are kept in files by the
+ * JobArtifactStore, outside the database.
+ *
+ * A job can split its work into subtasks that run in parallel with {@link #fork(Map, int)}.
+ * Each subtask gets a context of its own that writes to this job's log and shares its
+ * cancellation.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
+  private final JobsRepository jobsRepository;
+  private final JobLogLinesRepository jobLogLinesRepository;
+  private final Job job;
+  private final JobEventPublisher jobEventPublisher;
+  private final JobLogIndexer jobLogIndexer;
+  private final JobArtifactStore jobArtifactStore;
+
+  // set for the contexts of subtasks, which log through and are cancelled with their parent
+  private final JobContext parent;
+  private final String prefix;
+  private final int subtaskParallelism;
+  private final LongSupplier nanoClock;
+
+  private final int flushLines;
+  private final long flushBytes;
+  private final long flushIntervalNanos;
+
+  private final List<JobLogLine> pendingLines = new ArrayList<>();
+  private long pendingBytes = 0;
+  private long lastFlushNanos;
+  private long nextSeq;
+
+  private final boolean collapseRepeats;
+  private final int maxLinesPerSecond;
+  private final long maxLogBytes;
+  private String lastLogged;
+  private long repeatedLines;
+  private long rateWindowStartNanos;
+  private int rateWindowLines;
+  private long rateSuppressedLines;
+  private long loggedBytes;
+  private long overLimitLines;
+
+  /** Weight of the latest rate in the smoothed throughput estimate. */
+  static final double RATE_SMOOTHING = 0.3;
+
+  private final long progressIntervalNanos;
+  private long progressDone;
+  private long progressTotal;
+  private boolean progressPending = false;
+  private long progressWrittenNanos = 0; // 0 until progress is first written
+  private long progressWrittenDone;
+  private long progressWrittenTotal;
+  private Double progressRate;
+
+  private final int checkpointMaxBytes;
+  private volatile String checkpoint;
+
+  private final Object cancelLock = new Object();
+  private volatile String cancelReason;
+  private volatile boolean timedOut;
+  private Thread runner;
+  private long timeoutNanos;
+  private long startNanos;
+
+  /**
+   * Creates a context that keeps the log on the Job itself rather than in the job_log_lines
+   * table; useful for running a job directly, e.g. in a unit test.
+   *
+   * @param jobsRepository repository used to save the job after each line, may be null
+   * @param job the job being run
+   */
+  public JobContext(JobsRepository jobsRepository, Job job) {
+    this(jobsRepository, null, job, null, null, null, 0, 1, 0, 0, false, 0, 0, 0, 0, null, 0, null);
+  }
+
+  /**
+   * @param collapseRepeats whether to count rather than write lines repeating the line before
+   * @param maxLinesPerSecond most lines logged per second; 0 for no limit
+   * @param maxLogBytes most bytes logged, counted as for flushBytes; 0 for no limit
+   * @param subtaskParallelism how many subtasks {@link #fork(Map)} runs at once; 0 for the
+   *     number of processors
+   * @param progressIntervalMs least time between writes of progress; 0 to write every report
+   * @param checkpoint state saved by an earlier run of the job, or null
+   * @param checkpointMaxBytes largest checkpoint accepted, in UTF-8 bytes; 0 for no limit
+   * @param nanoClock source of System.nanoTime readings for the flush, rate, progress and
+   *     timeout intervals, so that tests can move time on; null for System.nanoTime
+   */
+  @Builder
+  private JobContext(
+      JobsRepository jobsRepository,
+      JobLogLinesRepository jobLogLinesRepository,
+      Job job,
+      JobEventPublisher jobEventPublisher,
+      JobLogIndexer jobLogIndexer,
+      JobArtifactStore jobArtifactStore,
+      long firstSeq,
+      int flushLines,
+      long flushBytes,
+      long flushIntervalMs,
+      boolean collapseRepeats,
+      int maxLinesPerSecond,
+      long maxLogBytes,
+      int subtaskParallelism,
+      long progressIntervalMs,
+      String checkpoint,
+      int checkpointMaxBytes,
+      LongSupplier nanoClock) {
+    this.jobsRepository = jobsRepository;
+    this.jobLogLinesRepository = jobLogLinesRepository;
+    this.job = job;
+    this.jobEventPublisher = jobEventPublisher;
+    this.jobLogIndexer = jobLogIndexer;
+    this.jobArtifactStore = jobArtifactStore;
+    this.parent = null;
+    this.prefix = "";
+    this.subtaskParallelism =
+        subtaskParallelism > 0 ? subtaskParallelism : Runtime.getRuntime().availableProcessors();
+    this.nextSeq = firstSeq;
+    this.flushLines = Math.max(flushLines, 1);
+    this.flushBytes = flushBytes > 0 ? flushBytes : Long.MAX_VALUE;
+    this.flushIntervalNanos = flushIntervalMs > 0 ? flushIntervalMs * 1_000_000 : Long.MAX_VALUE;
+    this.collapseRepeats = collapseRepeats;
+    this.maxLinesPerSecond = maxLinesPerSecond > 0 ? maxLinesPerSecond : Integer.MAX_VALUE;
+    this.maxLogBytes = maxLogBytes > 0 ? maxLogBytes : Long.MAX_VALUE;
+    this.progressIntervalNanos = Math.max(progressIntervalMs, 0) * 1_000_000;
+    this.checkpoint = checkpoint;
+    this.checkpointMaxBytes = checkpointMaxBytes > 0 ? checkpointMaxBytes : Integer.MAX_VALUE;
+    this.nanoClock = nanoClock != null ? nanoClock : System::nanoTime;
+    this.lastFlushNanos = this.nanoClock.getAsLong();
+    this.rateWindowStartNanos = this.lastFlushNanos;
+  }
+
+  /** Creates the context of a subtask, whose lines are logged by parent prefixed with [name]. */
+  private JobContext(JobContext parent, String name) {
+    this.jobsRepository = null;
+    this.jobLogLinesRepository = null;
+    this.job = parent.job;
+    this.jobEventPublisher = null;
+    this.jobLogIndexer = null;
+    this.jobArtifactStore = null;
+    this.parent = parent;
+    this.prefix = parent.prefix + "[" + name + "] ";
+    this.subtaskParallelism = parent.subtaskParallelism;
+    this.flushLines = 1;
+    this.flushBytes = Long.MAX_VALUE;
+    this.flushIntervalNanos = Long.MAX_VALUE;
+    this.collapseRepeats = parent.collapseRepeats;
+    this.maxLinesPerSecond = parent.maxLinesPerSecond;
+    this.maxLogBytes = parent.maxLogBytes;
+    this.progressIntervalNanos = 0;
+    this.checkpointMaxBytes = parent.checkpointMaxBytes;
+    this.nanoClock = parent.nanoClock;
+  }
 
   public void log(String message) {
+    checkCancelled();
+    root().logLimited(prefix + message);
+  }
+
+  private synchronized void logLimited(String message) {
+    if (collapseRepeats && lastLogged != null && lastLogged.equals(message)) {
+      repeatedLines++;
+      return;
+    }
+    if (loggedBytes >= maxLogBytes) {
+      overLimitLines++;
+      return;
+    }
+    long now = nanoClock.getAsLong();
+    if (now - rateWindowStartNanos >= 1_000_000_000L) {
+      rateWindowStartNanos = now;
+      rateWindowLines = 0;
+    }
+    if (rateWindowLines >= maxLinesPerSecond) {
+      rateSuppressedLines++;
+      return;
+    }
+    rateWindowLines++;
+
+    summarizeSuppressed();
+    lastLogged = message;
+    int length = byteLength(message);
+    if (loggedBytes + length > maxLogBytes) {
+      overLimitLines++;
+      append("Log limit of %,d bytes reached; later lines are suppressed".formatted(maxLogBytes));
+      loggedBytes = maxLogBytes;
+      return;
+    }
+    append(message, length);
+  }
+
+  /**
+   * Logs a line even if the job has been cancelled, and whatever the log limits; used by
+   * JobService to record how a job ended.
+   *
+   * @param message the line to log
+   */
+  synchronized void write(String message) {
+    if (parent != null) {
+      root().write(prefix + message);
+      return;
+    }
+    summarizeSuppressed();
+    append(message);
+  }
+
+  /**
+   * Logs how many lines were held back by the log limits since the last summary; called by
+   * JobService when the job ends.
+   */
+  synchronized void summarizeSuppressed() {
+    if (parent != null) {
+      root().summarizeSuppressed();
+      return;
+    }
+    if (repeatedLines > 0) {
+      append("(previous line repeated %s)".formatted(count(repeatedLines, "more time")));
+      repeatedLines = 0;
+    }
+    if (rateSuppressedLines > 0) {
+      append(
+          "Suppressed %s: more than %,d lines per second"
+              .formatted(count(rateSuppressedLines, "line"), maxLinesPerSecond));
+      rateSuppressedLines = 0;
+    }
+    if (overLimitLines > 0) {
+      append("Suppressed %s over the log limit".formatted(count(overLimitLines, "line")));
+      overLimitLines = 0;
+    }
+  }
+
+  private static String count(long n, String noun) {
+    return "%,d %s%s".formatted(n, noun, n == 1 ? "" : "s");
+  }
+
+  private static int byteLength(String message) {
+    return message == null ? 0 : message.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private void append(String message) {
+    append(message, byteLength(message));
+  }
+
+  /** @param bytes length of message in UTF-8 */
+  private void append(String message, int bytes) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    loggedBytes += bytes;
+
+    if (jobLogLinesRepository == null) {
+      String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
+      job.setLog(previousLog + message);
+      if (jobsRepository != null) jobsRepository.save(job);
+      return;
+    }
+
+    // one row per line, so that seq numbers, which tail offsets count, stay the same once the
+    // log is archived as text and split into lines again
+    if (message != null && message.indexOf('\n') >= 0) {
+      for (String part : message.split("\n", -1)) {
+        appendLine(part, byteLength(part));
+      }
+      return;
+    }
+    appendLine(message, bytes);
+  }
+
+  private void appendLine(String message, int bytes) {
+    JobLogLine line =
+        JobLogLine.builder()
+            .jobId(job.getId())
+            .seq(nextSeq++)
+            .loggedAt(ZonedDateTime.now())
+            .message(message)
+            .build();
+    if (jobEventPublisher != null) {
+      jobEventPublisher.publishLine(job.getId(), line.getSeq(), message);
+    }
+    pendingLines.add(line);
+    pendingBytes += bytes;
+
+    if (pendingLines.size() >= flushLines
+        || pendingBytes >= flushBytes
+        || nanoClock.getAsLong() - lastFlushNanos >= flushIntervalNanos) {
+      flush();
+    }
+  }
+
+  /** Writes any pending log lines to the database in one batch. */
+  public synchronized void flush() {
+    if (parent != null) {
+      root().flush();
+      return;
+    }
+    lastFlushNanos = nanoClock.getAsLong();
+    if (pendingLines.isEmpty()) return;
+
+    if (pendingLines.size() == 1) {
+      jobLogLinesRepository.save(pendingLines.get(0));
+    } else {
+      jobLogLinesRepository.saveAll(List.copyOf(pendingLines));
+    }
+    if (jobLogIndexer != null) {
+      jobLogIndexer.index(pendingLines);
+    }
+    pendingLines.clear();
+    pendingBytes = 0;
+  }
+
+  /**
+   * Flushes pending lines if the flush interval has passed; called periodically by JobService
+   * so that a job that logs a line and then goes quiet does not hold it back indefinitely.
+   */
+  synchronized void flushIfDue() {
+    if (nanoClock.getAsLong() - lastFlushNanos >= flushIntervalNanos) {
+      flush();
+    }
+    if (nanoClock.getAsLong() - progressWrittenNanos >= progressIntervalNanos) {
+      flushProgress();
+    }
+  }
+
+  /**
+   * Reports how far the job has got. The first report, the report that reaches total, and
+   * reports made progressIntervalMs after the last one written are written at once; others
+   * are held back and written later, so calling this for every item is cheap. Like
+   * {@link #log(String)}, this throws if the job has been cancelled.
+   *
+   * @param done items done so far
+   * @param total items in all
+   * @throws JobCancelledException if the job should stop
+   */
+  public void progress(long done, long total) {
+    checkCancelled();
+    root().recordProgress(done, total);
+  }
+
+  private synchronized void recordProgress(long done, long total) {
+    progressDone = done;
+    progressTotal = total;
+    progressPending =
+        progressWrittenNanos == 0 || done != progressWrittenDone || total != progressWrittenTotal;
+    if (!progressPending) return;
+    if (progressWrittenNanos == 0
+        || (done >= total && done != progressWrittenDone)
+        || nanoClock.getAsLong() - progressWrittenNanos >= progressIntervalNanos) {
+      flushProgress();
+    }
+  }
+
+  /**
+   * Writes progress held back by {@link #progress(long, long)}, updating the throughput
+   * estimate: a moving average of the rate between writes.
+   */
+  synchronized void flushProgress() {
+    if (!progressPending) return;
+    progressPending = false;
+
+    long now = nanoClock.getAsLong();
+    if (progressWrittenNanos != 0
+        && now > progressWrittenNanos
+        && progressDone >= progressWrittenDone) {
+      double rate = (progressDone - progressWrittenDone) * 1e9 / (now - progressWrittenNanos);
+      progressRate =
+          progressRate == null ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * progressRate;
+    }
+    progressWrittenNanos = now;
+    progressWrittenDone = progressDone;
+    progressWrittenTotal = progressTotal;
+
+    ZonedDateTime eta = null;
+    if (progressRate != null && progressRate > 0 && progressTotal >= progressDone) {
+      long remainingMs = (long) ((progressTotal - progressDone) * 1000 / progressRate);
+      eta = ZonedDateTime.now().plus(Duration.ofMillis(remainingMs));
+    }
+    job.setProgressDone(progressDone);
+    job.setProgressTotal(progressTotal);
+    job.setProgressRate(progressRate);
+    job.setProgressEta(eta);
+    if (jobsRepository != null) {
+      jobsRepository.updateProgress(job.getId(), progressDone, progressTotal, progressRate, eta);
+    }
+    if (jobEventPublisher != null) {
+      jobEventPublisher.publishProgress(
+          job.getId(),
+          JobProgress.builder()
+              .jobId(job.getId())
+              .done(progressDone)
+              .total(progressTotal)
+              .itemsPerSecond(progressRate)
+              .eta(eta)
+              .build());
+    }
+  }
+
+  /**
+   * Saves the state a job needs to carry on where it left off, replacing any earlier
+   * checkpoint. Log lines and progress reported so far are written first, so that a run
+   * resumed from this checkpoint does not find them missing. The state is opaque to
+   * JobService; it should be small, e.g. the id of the last item done. Like
+   * {@link #log(String)}, this throws if the job has been cancelled.
+   *
+   * @param state the job's state, or null to clear it
+   * @throws IllegalArgumentException if the state is larger than app.jobs.checkpoint.max-bytes
+   * @throws JobCancelledException if the job should stop
+   */
+  public void checkpoint(String state) {
+    checkCancelled();
+    if (state != null && state.getBytes(StandardCharsets.UTF_8).length > checkpointMaxBytes) {
+      throw new IllegalArgumentException(
+          "Checkpoint of job %d is larger than %d bytes".formatted(job.getId(), checkpointMaxBytes));
+    }
+    root().saveCheckpoint(state);
+  }
+
+  private synchronized void saveCheckpoint(String state) {
+    flush();
+    flushProgress();
+    ZonedDateTime checkpointAt = state == null ? null : ZonedDateTime.now();
+    if (jobsRepository != null) {
+      jobsRepository.saveCheckpoint(job.getId(), state, checkpointAt);
+    }
+    job.setCheckpoint(state);
+    job.setCheckpointAt(checkpointAt);
+    checkpoint = state;
+  }
+
+  /**
+   * @return the state last saved with {@link #checkpoint(String)}, by this run of the job or
+   *     an earlier one, or null if there is none
+   */
+  public String getCheckpoint() {
+    return root().checkpoint;
+  }
+
+  /**
+   * Saves a result of the job as an artifact, which can be downloaded from
+   * /api/jobs/artifact once saved. The writer streams the content to a file, so artifacts may
+   * be far larger than would fit in memory. An artifact is only saved if the writer returns
+   * normally; one with the same name saved earlier is replaced. Like {@link #log(String)},
+   * this throws if the job has been cancelled.
+   *
+   * @param name name of the artifact, e.g. export.csv: letters, digits, dots, dashes and
+   *     underscores
+   * @param writer writes the content of the artifact
+   * @return the saved artifact
+   * @throws IllegalArgumentException if the name is not allowed
+   * @throws IllegalStateException if this context has no artifact store
+   * @throws JobCancelledException if the job should stop
+   * @throws Exception whatever the writer throws
+   */
+  public JobArtifact writeArtifact(String name, JobArtifactWriter writer) throws Exception {
+    checkCancelled();
+    JobArtifactStore store = root().jobArtifactStore;
+    if (store == null) {
+      throw new IllegalStateException("Job %d cannot save artifacts".formatted(job.getId()));
+    }
+    JobArtifact artifact = store.save(job.getId(), name, writer);
+    write("Saved artifact %s (%,d bytes)".formatted(name, artifact.getSize()));
+    return artifact;
+  }
+
+  /** @return the job this context logs for */
+  Job getJob() {
+    return job;
+  }
+
+  /**
+   * Throws if the job has been cancelled or has timed out.
+   *
+   * @throws JobCancelledException if the job should stop
+   */
+  public void checkCancelled() {
+    String reason = root().cancelReason;
+    if (reason != null) {
+      throw new JobCancelledException(reason);
+    }
+  }
+
+  /** @return whether the job has been cancelled or has timed out */
+  public boolean isCancelled() {
+    return root().cancelReason != null;
+  }
+
+  /** @return whether the job was stopped because it ran past its timeout */
+  public boolean isTimedOut() {
+    return root().timedOut;
+  }
+
+  /** @return why the job was stopped, or null if it was not */
+  public String getCancelReason() {
+    return root().cancelReason;
+  }
+
+  /**
+   * Asks the job to stop: marks it cancelled and interrupts the thread running it, if any.
+   * Only the first call has any effect. Cancelling a subtask cancels the whole job.
+   *
+   * @param reason why the job is being stopped; logged when the job ends
+   * @param timedOut whether the job is being stopped because it ran past its timeout
+   */
+  public void cancel(String reason, boolean timedOut) {
+    if (parent != null) {
+      root().cancel(reason, timedOut);
+      return;
+    }
+    synchronized (cancelLock) {
+      if (cancelReason != null) return;
+      this.timedOut = timedOut;
+      cancelReason = reason;
+      if (runner != null) runner.interrupt();
+    }
+  }
+
+  /**
+   * Records the thread running the job, so that cancel() can interrupt it, and when the job
+   * has to stop by.
+   *
+   * @param thread the thread about to run the job
+   * @param timeoutMs how long the job may run, or 0 for no limit
+   */
+  void attach(Thread thread, long timeoutMs) {
+    synchronized (cancelLock) {
+      runner = thread;
+      startNanos = nanoClock.getAsLong();
+      timeoutNanos = timeoutMs * 1_000_000;
+    }
+  }
+
+  /**
+   * Forgets the thread that ran the job, so that a late cancel() cannot interrupt whatever
+   * that pooled thread runs next, and clears any interrupt meant for this job.
+   */
+  void detach() {
+    synchronized (cancelLock) {
+      runner = null;
+      Thread.interrupted();
+    }
+  }
+
+  /** @return whether the job has run past its timeout */
+  boolean isPastDeadline() {
+    synchronized (cancelLock) {
+      return runner != null
+          && timeoutNanos > 0
+          && nanoClock.getAsLong() - startNanos > timeoutNanos;
+    }
+  }
+
+  /**
+   * Runs subtasks in parallel, as many at once as configured by app.jobs.subtasks.parallelism,
+   * and waits for all of them to finish. See {@link #fork(Map, int)}.
+   *
+   * @param subtasks the subtasks by name
+   * @throws SubtasksFailedException if any subtask failed
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public void fork(Map<String, ? extends JobContextConsumer> subtasks)
+      throws InterruptedException {
+    fork(subtasks, subtaskParallelism);
+  }
+
+  /**
+   * Runs subtasks in parallel, each on a thread of its own, and waits for all of them to
+   * finish. No subtask outlives this call.
+   *
+   * Each subtask logs through a context of its own; its lines go straight into this job's
+   * log, prefixed with [name], so that the lines of subtasks running side by side are
+   * interleaved in the order they were logged. Subtasks may fork subtasks of their own.
+   *
+   * A failing subtask does not stop the others. Once all have finished, each failure is
+   * logged and a SubtasksFailedException is thrown with all of them. If the job is cancelled
+   * or times out the running subtasks are interrupted, those not yet started never start, and
+   * a JobCancelledException is thrown once they have all stopped.
+   *
+   * @param subtasks the subtasks by name, started in iteration order
+   * @param parallelism the maximum number of subtasks running at once
+   * @throws SubtasksFailedException if any subtask failed
+   * @throws InterruptedException if the thread was interrupted while waiting for reasons
+   *     other than the job being cancelled
+   */
+  public void fork(Map<String, ? extends JobContextConsumer> subtasks, int parallelism)
+      throws InterruptedException {
+    checkCancelled();
+    if (subtasks.isEmpty()) return;
+
+    int threads = Math.min(Math.max(parallelism, 1), subtasks.size());
+    // subtasks get the security context of the thread calling fork, whatever it is; for jobs
+    // started by the scheduler or claimed from the durable queue it is empty, not the creator's
+    ExecutorService executor =
+        new DelegatingSecurityContextExecutorService(
+            Executors.newFixedThreadPool(
+                threads,
+                Thread.ofVirtual().name("job-%d-subtask-".formatted(job.getId()), 1).factory()));
+    Map<String, Future<?>> futures = new LinkedHashMap<>();
+    Map<String, Throwable> failures = new LinkedHashMap<>();
+    try {
+      subtasks.forEach(
+          (name, subtask) -> {
+            JobContext context = new JobContext(this, name);
+            futures.put(
+                name,
+                executor.submit(
+                    () -> {
+                      subtask.accept(context);
+                      return null;
+                    }));
+          });
+      for (Map.Entry<String, Future<?>> future : futures.entrySet()) {
+        try {
+          future.getValue().get();
+        } catch (ExecutionException e) {
+          failures.put(future.getKey(), e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      checkCancelled();
+      throw e;
+    } finally {
+      // waits for interrupted subtasks to stop
+      executor.close();
+    }
+
+    checkCancelled();
+    if (!failures.isEmpty()) {
+      failures.forEach(
+          (name, cause) -> write("Subtask %s failed: %s".formatted(name, cause.getMessage())));
+      throw new SubtasksFailedException(failures, subtasks.size());
+    }
+  }
+
+  private JobContext root() {
+    return parent == null ? this : parent.root();
   }
 }
@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.models.JobEvent;
+import edu.ucsb.cs156.example.models.JobProgress;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+/**
+ * Fans out log lines and status changes of running jobs to clients subscribed over
+ * Server-Sent Events.
+ *
+ * Events are delivered in memory, so subscribers see lines as soon as JobContext.log is
+ * called, even if the lines are still buffered for the database. Only jobs running on this
+ * node are visible; subscribers that connect late catch up with the tail endpoint.
+ *
+ * Publishing never writes to a client: each subscriber has a queue of at most
+ * app.jobs.stream.queue-capacity events, which a task on a virtual thread of its own sends in
+ * order. A job that logs while a client reads slowly, or not at all, is never held up; a
+ * subscriber whose queue fills is dropped, and can reconnect and catch up with the tail
+ * endpoint.
+ */
+@Service
+@Slf4j
+public class JobEventPublisher {
+
+  public static final String LOG_EVENT = "log";
+  public static final String STATUS_EVENT = "status";
+  public static final String PROGRESS_EVENT = "progress";
+
+  @Value("${app.jobs.stream.timeout-ms:1800000}")
+  private long timeoutMs;
+
+  @Value("${app.jobs.stream.queue-capacity:1000}")
+  private int queueCapacity;
+
+  private final ExecutorService sender =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-events-", 1).factory());
+
+  private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+  private final Map<Long, Set<Subscriber>> jobSubscribers = new ConcurrentHashMap<>();
+  private final Set<Subscriber> allJobsSubscribers = ConcurrentHashMap.newKeySet();
+
+  /** A subscription, with the events waiting to be sent to it. */
+  private class Subscriber {
+    private final SseEmitter emitter;
+    private final Collection<Long> jobIds;
+    private final BlockingQueue<SseEventBuilder> pending;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+
+    Subscriber(SseEmitter emitter, Collection<Long> jobIds) {
+      this.emitter = emitter;
+      this.jobIds = jobIds;
+      this.pending = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+    }
+
+    void enqueue(String eventName, JobEvent event) {
+      if (dropped.get()) return;
+      // built per subscriber: building an SseEventBuilder changes it
+      if (!pending.offer(SseEmitter.event().name(eventName).data(event))) {
+        log.info("Dropping job event subscriber: more than {} events behind", queueCapacity);
+        drop(null);
+        return;
+      }
+      startSending();
+    }
+
+    private void startSending() {
+      if (sending.compareAndSet(false, true)) {
+        sender.execute(this::sendPending);
+      }
+    }
+
+    private void sendPending() {
+      SseEventBuilder event;
+      while (!dropped.get() && (event = pending.poll()) != null) {
+        try {
+          emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+          // the client has gone away
+          log.debug("Dropping job event subscriber: {}", e.getMessage());
+          drop(e);
+        }
+      }
+      sending.set(false);
+      // an event enqueued after the last poll but before sending was cleared
+      if (!dropped.get() && !pending.isEmpty()) startSending();
+    }
+
+    /** Unsubscribes and closes the emitter; the emitter is closed on a sender thread. */
+    private void drop(Throwable error) {
+      if (!dropped.compareAndSet(false, true)) return;
+      unsubscribe(this);
+      pending.clear();
+      sender.execute(
+          () -> {
+            if (error != null) {
+              emitter.completeWithError(error);
+            } else {
+              emitter.complete();
+            }
+          });
+    }
+  }
+
+  /**
+   * Subscribes to the events of some jobs.
+   *
+   * @param jobIds ids of the jobs to watch; if empty, every job is watched
+   * @return the emitter the events are sent to
+   */
+  public SseEmitter subscribe(Collection<Long> jobIds) {
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    subscribe(jobIds, emitter);
+    return emitter;
+  }
+
+  void subscribe(Collection<Long> jobIds, SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter, List.copyOf(jobIds));
+    emitter.onCompletion(() -> unsubscribe(subscriber));
+    emitter.onTimeout(() -> unsubscribe(subscriber));
+    emitter.onError(e -> unsubscribe(subscriber));
+
+    subscribers.put(emitter, subscriber);
+    if (jobIds.isEmpty()) {
+      allJobsSubscribers.add(subscriber);
+    } else {
+      jobIds.forEach(
+          id ->
+              jobSubscribers
+                  .computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet())
+                  .add(subscriber));
+    }
+  }
+
+  public void publishLine(long jobId, long seq, String message) {
+    publish(jobId, LOG_EVENT, JobEvent.builder().jobId(jobId).seq(seq).message(message).build());
+  }
+
+  public void publishStatus(long jobId, JobStatus status) {
+    publish(jobId, STATUS_EVENT, JobEvent.builder().jobId(jobId).status(status).build());
+  }
+
+  public void publishProgress(long jobId, JobProgress progress) {
+    publish(jobId, PROGRESS_EVENT, JobEvent.builder().jobId(jobId).progress(progress).build());
+  }
+
+  /**
+   * Queues an event for a single subscriber, e.g. the current status of a job for a new
+   * subscriber. Does nothing if the emitter is no longer subscribed.
+   *
+   * @param emitter the emitter returned by {@link #subscribe(Collection)}
+   * @param eventName name of the SSE event
+   * @param event the event
+   */
+  public void send(SseEmitter emitter, String eventName, JobEvent event) {
+    Subscriber subscriber = subscribers.get(emitter);
+    if (subscriber != null) {
+      subscriber.enqueue(eventName, event);
+    }
+  }
+
+  /** @return the number of open subscriptions */
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    sender.shutdownNow();
+  }
+
+  private void publish(long jobId, String eventName, JobEvent event) {
+    Set<Subscriber> watching = jobSubscribers.get(jobId);
+    if (watching != null) {
+      watching.forEach(subscriber -> subscriber.enqueue(eventName, event));
+    }
+    allJobsSubscribers.forEach(subscriber -> subscriber.enqueue(eventName, event));
+  }
+
+  private void unsubscribe(Subscriber subscriber) {
+    subscribers.remove(subscriber.emitter);
+    allJobsSubscribers.remove(subscriber);
+    subscriber.jobIds.forEach(
+        id ->
+            jobSubscribers.computeIfPresent(
+                id,
+                (k, watching) -> {
+                  watching.remove(subscriber);
+                  return watching.isEmpty() ? null : watching;
+                }));
+  }
+}
@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Compresses the logs of finished jobs when app.jobs.log.compression is gzip.
+ *
+ * While a job runs its log is kept as JobLogLine rows, so that it can be tailed and streamed
+ * line by line. Once it ends the lines are rarely read again and never change, so they are
+ * replaced by a single gzip-compressed JobLogArchive; job output is repetitive enough that
+ * this is typically several times smaller than the rows it replaces.
+ */
+@Service
+public class JobLogCompressor {
+  /** Value of app.jobs.log.compression that archives finished job logs with gzip. */
+  public static final String GZIP = "gzip";
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Value("${app.jobs.log.compression:gzip}")
+  private String compression;
+
+  /**
+   * Replaces the log lines of a finished job with a compressed archive. Does nothing if
+   * compression is off or the job has not logged anything.
+   *
+   * @param jobId id of the job
+   */
+  @Transactional
+  public void archive(long jobId) {
+    if (!GZIP.equals(compression)) return;
+
+    List<String> lines = jobLogLinesRepository.findMessagesByJobId(jobId);
+    if (lines.isEmpty()) return;
+
+    byte[] raw = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    jobLogArchivesRepository.save(
+        JobLogArchive.builder()
+            .jobId(jobId)
+            .lineCount(lines.size())
+            .rawBytes(raw.length)
+            .data(gzip(raw))
+            .build());
+    jobLogLinesRepository.deleteByJobId(jobId);
+  }
+
+  /**
+   * Compresses bytes with gzip.
+   *
+   * @param raw the bytes to compress
+   * @return the gzip-compressed bytes
+   */
+  public static byte[] gzip(byte[] raw) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(raw);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decompresses an archived log.
+   *
+   * @param data gzip-compressed UTF-8 text
+   * @return the text
+   */
+  public static String gunzip(byte[] data) {
+    try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
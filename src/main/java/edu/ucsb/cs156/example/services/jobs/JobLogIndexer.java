@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobLogToken;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains an inverted index over job logs, from each word to the log lines it occurs in, and
+ * searches it.
+ *
+ * Lines are indexed as JobContext writes them, so the index is always as current as the logs
+ * themselves. Words are the runs of letters and digits in a line, compared case-insensitively;
+ * a search finds the lines that contain every word of the query, in any order.
+ */
+@Service
+@Slf4j
+public class JobLogIndexer {
+  /** Longest word indexed; longer words are cut to this length, in lines and queries alike. */
+  public static final int MAX_TOKEN_LENGTH = 64;
+
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  @Autowired private JobLogTokensRepository jobLogTokensRepository;
+
+  /**
+   * Splits text into the distinct tokens the index holds for it.
+   *
+   * @param text a log line or search query
+   * @return the tokens, in order of first occurrence
+   */
+  public static Set<String> tokens(String text) {
+    Set<String> tokens = new LinkedHashSet<>();
+    if (text == null) return tokens;
+    for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+      if (!word.isEmpty()) {
+        tokens.add(word.length() > MAX_TOKEN_LENGTH ? word.substring(0, MAX_TOKEN_LENGTH) : word);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Adds log lines to the index. A failure is logged rather than thrown: it leaves the lines
+   * unsearchable but must not fail the job that logged them.
+   *
+   * @param lines lines just written to job_log_lines
+   */
+  public void index(Collection<JobLogLine> lines) {
+    List<JobLogToken> entries = new ArrayList<>();
+    for (JobLogLine line : lines) {
+      for (String token : tokens(line.getMessage())) {
+        entries.add(new JobLogToken(token, line.getJobId(), line.getSeq()));
+      }
+    }
+    if (entries.isEmpty()) return;
+    try {
+      jobLogTokensRepository.saveAll(entries);
+    } catch (RuntimeException e) {
+      log.warn("Could not index {} log lines", lines.size(), e);
+    }
+  }
+
+  /**
+   * Finds the log lines that contain every word of a query.
+   *
+   * @param query the words to look for
+   * @param createdFrom only search jobs created at or after this time, or null
+   * @param createdTo only search jobs created before this time, or null
+   * @param maxLines maximum number of matching lines to return
+   * @return the matching lines, grouped by job, newest job first
+   * @throws IllegalArgumentException if the query has no words
+   */
+  public List<JobLogSearchResult> search(
+      String query, ZonedDateTime createdFrom, ZonedDateTime createdTo, int maxLines) {
+    Set<String> tokens = tokens(query);
+    if (tokens.isEmpty()) {
+      throw new IllegalArgumentException("Search query has no words to look for");
+    }
+
+    List<JobLogMatch> matches =
+        jobLogTokensRepository.findLinesContainingAll(
+            tokens, tokens.size(), createdFrom, createdTo, PageRequest.of(0, Math.max(maxLines, 1)));
+    Map<Long, List<Long>> linesByJob = new LinkedHashMap<>();
+    for (JobLogMatch match : matches) {
+      linesByJob.computeIfAbsent(match.getJobId(), id -> new ArrayList<>()).add(match.getSeq());
+    }
+    return linesByJob.entrySet().stream()
+        .map(e -> JobLogSearchResult.builder().jobId(e.getKey()).lines(e.getValue()).build())
+        .toList();
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobTypeMetrics;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records, per job type, how long jobs wait before they start, how long they run, and how
+ * they end. JobService records into it from the job threads; nothing here takes a lock.
+ */
+@Service
+public class JobMetricsRecorder {
+  private final Map<String, TypeStats> stats = new ConcurrentHashMap<>();
+
+  private static class TypeStats {
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final LatencyHistogram runTime = new LatencyHistogram();
+    final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Names a job by its class: the simple name for named classes, and the enclosing class
+   * followed by $$Lambda for lambdas, so that each lambda site is one type.
+   *
+   * @param jobFunction the job
+   * @return the job type
+   */
+  public static String jobType(JobContextConsumer jobFunction) {
+    String name = jobFunction.getClass().getSimpleName();
+    int lambda = name.indexOf("$$Lambda");
+    return lambda >= 0 ? name.substring(0, lambda + "$$Lambda".length()) : name;
+  }
+
+  private TypeStats statsFor(String jobType) {
+    return stats.computeIfAbsent(jobType, type -> new TypeStats());
+  }
+
+  /**
+   * Records how long a job waited between being submitted and starting to run.
+   *
+   * @param jobType the job type
+   * @param waitMs the wait in milliseconds
+   */
+  public void recordQueueWait(String jobType, long waitMs) {
+    statsFor(jobType).queueWait.record(waitMs);
+  }
+
+  /**
+   * Records that a job finished.
+   *
+   * @param jobType the job type
+   * @param runTimeMs how long the job ran, in milliseconds
+   * @param status the job's final status
+   */
+  public void recordFinish(String jobType, long runTimeMs, String status) {
+    TypeStats typeStats = statsFor(jobType);
+    typeStats.runTime.record(runTimeMs);
+    typeStats.outcomes.computeIfAbsent(status, s -> new LongAdder()).increment();
+  }
+
+  /**
+   * Records that a job was never run, e.g. because the executor was full.
+   *
+   * @param jobType the job type
+   * @param outcome why it was not run, e.g. "rejected"
+   */
+  public void recordOutcome(String jobType, String outcome) {
+    statsFor(jobType).outcomes.computeIfAbsent(outcome, s -> new LongAdder()).increment();
+  }
+
+  /** @return the metrics recorded so far, by job type, in order of job type */
+  public Map<String, JobTypeMetrics> snapshot() {
+    Map<String, JobTypeMetrics> result = new TreeMap<>();
+    stats.forEach(
+        (type, typeStats) -> {
+          Map<String, Long> outcomes = new TreeMap<>();
+          typeStats.outcomes.forEach((status, n) -> outcomes.put(status, n.sum()));
+          result.put(
+              type,
+              JobTypeMetrics.builder()
+                  .queueWait(typeStats.queueWait.snapshot())
+                  .runTime(typeStats.runTime.snapshot())
+                  .outcomes(outcomes)
+                  .build());
+        });
+    return result;
+  }
+}
@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A job made of named steps, each a JobContextConsumer, where a step may depend on others.
+ * Run it with {@link JobService#runPipeline(JobPipeline)}.
+ *
+ * A step may only depend on steps added before it, so every pipeline is a DAG. Steps whose
+ * dependencies have all completed run in parallel on the job executor.
+ *
+ * <pre>
+ * JobPipeline.builder()
+ *     .step("fetch", fetchJob)
+ *     .step("parse", parseJob, "fetch")
+ *     .step("index", indexJob, "fetch")
+ *     .step("publish", publishJob, "parse", "index")
+ *     .build();
+ * </pre>
+ */
+public class JobPipeline {
+  /**
+   * One step of a pipeline.
+   *
+   * @param name name of the step, unique within the pipeline
+   * @param job the work the step does
+   * @param dependsOn names of the steps that must complete before this one starts
+   */
+  public record Step(String name, JobContextConsumer job, List<String> dependsOn) {}
+
+  private final List<Step> steps;
+
+  private JobPipeline(List<Step> steps) {
+    this.steps = List.copyOf(steps);
+  }
+
+  /** @return the steps, in the order they were added */
+  public List<Step> getSteps() {
+    return steps;
+  }
+
+  /** @return a builder for a new pipeline */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Builder for JobPipeline. */
+  public static class Builder {
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    /**
+     * Adds a step.
+     *
+     * @param name name of the step, unique within the pipeline
+     * @param job the work the step does
+     * @param dependsOn names of steps, already added, that must complete before this one starts
+     * @return this builder
+     * @throws IllegalArgumentException if the name is taken or a dependency has not been added
+     */
+    public Builder step(String name, JobContextConsumer job, String... dependsOn) {
+      if (steps.containsKey(name)) {
+        throw new IllegalArgumentException("Duplicate pipeline step " + name);
+      }
+      for (String dependency : dependsOn) {
+        if (!steps.containsKey(dependency)) {
+          throw new IllegalArgumentException(
+              "Pipeline step %s depends on unknown step %s".formatted(name, dependency));
+        }
+      }
+      steps.put(name, new Step(name, job, List.of(dependsOn)));
+      return this;
+    }
+
+    /**
+     * @return the pipeline
+     * @throws IllegalArgumentException if no steps were added
+     */
+    public JobPipeline build() {
+      if (steps.isEmpty()) {
+        throw new IllegalArgumentException("A pipeline needs at least one step");
+      }
+      return new JobPipeline(new ArrayList<>(steps.values()));
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs jobs from the durable queue, i.e. jobs that JobService stored in the jobs table with
+ * status pending because app.jobs.queue.mode is durable.
+ *
+ * Every node polls the table and claims jobs with SELECT ... FOR UPDATE SKIP LOCKED, so nodes
+ * never wait on each other and each job is claimed by one node. Claiming a job starts a lease
+ * that the node renews with a heartbeat while the job runs. If the node dies, the lease expires
+ * and another node claims the job and runs it again, up to maxAttempts times; the job starts
+ * over, or carries on from its last JobContext checkpoint if it saved one.
+ */
+@Service
+@Slf4j
+public class JobQueueWorker {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogIndexer jobLogIndexer;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JobEventPublisher jobEventPublisher;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  @Qualifier(JobExecutorConfig.JOB_EXECUTOR)
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  @Value("${app.jobs.queue.mode:memory}")
+  private String queueMode;
+
+  @Value("${app.jobs.queue.lease-ms:60000}")
+  private long leaseMs;
+
+  @Value("${app.jobs.queue.max-attempts:3}")
+  private int maxAttempts;
+
+  @Value("${app.jobs.queue.heartbeat-interval-ms:15000}")
+  private long heartbeatIntervalMs;
+
+  private final ScheduledExecutorService heartbeats =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("job-heartbeat").daemon().factory());
+
+  /** Identifies this node in the worker_id column of the jobs it has claimed. */
+  @Getter private final String workerId = UUID.randomUUID().toString();
+
+  /** Claims and starts queued jobs for as long as this node has idle job workers. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.poll-interval-ms:1000}")
+  public void pollQueue() {
+    if (!JobService.DURABLE_QUEUE.equals(queueMode)) return;
+
+    while (hasIdleWorker()) {
+      Optional<Long> claimed = transactionTemplate.execute(status -> claimNext());
+      if (claimed.isEmpty()) return;
+      jobsRepository.findById(claimed.get()).ifPresent(this::start);
+    }
+  }
+
+  /**
+   * Starts sending heartbeats every app.jobs.queue.heartbeat-interval-ms.
+   *
+   * They run on a thread of their own rather than on Spring's shared scheduler, whose single
+   * thread also runs the retention sweep, log flushes and other tasks: if any of those took
+   * longer than the lease, this node's jobs would look dead to other nodes and be taken away
+   * from it while they were still running.
+   */
+  @PostConstruct
+  void startHeartbeats() {
+    heartbeats.scheduleWithFixedDelay(
+        () -> {
+          try {
+            heartbeat();
+          } catch (RuntimeException e) {
+            // a later heartbeat renews the leases, as long as it comes within lease-ms
+            log.warn("Could not renew job leases", e);
+          }
+        },
+        heartbeatIntervalMs,
+        heartbeatIntervalMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stopHeartbeats() {
+    heartbeats.shutdownNow();
+  }
+
+  /**
+   * Renews the leases of the jobs this node is responsible for, in either queue mode, so that
+   * JobReconciler can tell them from jobs whose node has died.
+   */
+  public void heartbeat() {
+    Set<Long> owned = jobService.ownedJobIds();
+    if (!owned.isEmpty()) {
+      jobsRepository.heartbeat(workerId, owned, ZonedDateTime.now());
+    }
+  }
+
+  private boolean hasIdleWorker() {
+    return jobExecutor.getActiveCount() + jobExecutor.getQueueSize() < jobExecutor.getMaxPoolSize();
+  }
+
+  private Optional<Long> claimNext() {
+    ZonedDateTime now = ZonedDateTime.now();
+    Optional<Long> id = jobsRepository.findNextClaimableJobId(now.minusNanos(leaseMs * 1_000_000));
+    id.ifPresent(jobId -> jobsRepository.claim(jobId, workerId, now));
+    return id;
+  }
+
+  private void start(Job job) {
+    if (job.getAttempts() > maxAttempts) {
+      fail(job, "Job abandoned after %d attempts".formatted(maxAttempts));
+      return;
+    }
+
+    JobContextConsumer jobFunction;
+    try {
+      Class<? extends JobContextConsumer> type =
+          Class.forName(job.getJobType()).asSubclass(JobContextConsumer.class);
+      jobFunction = mapper.readValue(job.getJobParams(), type);
+    } catch (Exception e) {
+      fail(job, "Cannot rebuild job %s: %s".formatted(job.getJobType(), e.getMessage()));
+      return;
+    }
+
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+    try {
+      jobService.runJobAsync(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      log.info("Job executor full, returning job {} to the queue", job.getId());
+      jobsRepository.release(job.getId(), workerId);
+    }
+  }
+
+  private void fail(Job job, String message) {
+    log.warn("Job {}: {}", job.getId(), message);
+    job.setStatus(JobStatus.ERROR);
+    long firstSeq =
+        jobLogLinesRepository.findMaxSeqByJobId(job.getId()).map(seq -> seq + 1).orElse(0L);
+    JobContext.builder()
+        .jobLogLinesRepository(jobLogLinesRepository)
+        .jobLogIndexer(jobLogIndexer)
+        .job(job)
+        .firstSeq(firstSeq)
+        .build()
+        .log(message);
+    jobsRepository.save(job);
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+  }
+}
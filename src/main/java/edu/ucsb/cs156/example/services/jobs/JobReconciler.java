@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds jobs left with status running by a node that died, e.g. because its JVM was killed
+ * while the job ran, and settles them, so that they do not stay running forever.
+ *
+ * Every node sends heartbeats for the jobs it is responsible for (see
+ * JobQueueWorker.heartbeat()). A running job with no heartbeat for app.jobs.queue.lease-ms
+ * is orphaned. Orphaned jobs from the durable queue are returned to it, to be run again from
+ * their last checkpoint; orphaned jobs run in memory cannot be rebuilt, so they are marked
+ * error, or cancelled if they had been asked to stop. Each job is taken with a conditional
+ * update, so nodes reconciling at the same time never settle a job twice, and a job whose
+ * node sends a heartbeat in the meantime is left alone.
+ */
+@Service
+@Slf4j
+public class JobReconciler {
+  static final String ORPHANED_REASON = "its node stopped sending heartbeats";
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogIndexer jobLogIndexer;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Autowired private JobEventPublisher jobEventPublisher;
+
+  @Value("${app.jobs.queue.mode:memory}")
+  private String queueMode;
+
+  @Value("${app.jobs.queue.lease-ms:60000}")
+  private long leaseMs;
+
+  @Value("${app.jobs.reconcile.batch-size:100}")
+  private int batchSize;
+
+  /** Settles jobs orphaned while no node was running, e.g. during a redeploy. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileAtStartup() {
+    reconcile();
+  }
+
+  /**
+   * Settles the running jobs whose node has stopped sending heartbeats.
+   *
+   * @return the number of jobs settled
+   */
+  @Scheduled(
+      initialDelayString = "${app.jobs.reconcile.interval-ms:60000}",
+      fixedDelayString = "${app.jobs.reconcile.interval-ms:60000}")
+  public int reconcile() {
+    ZonedDateTime leaseExpiredBefore = ZonedDateTime.now().minusNanos(leaseMs * 1_000_000);
+    int total = 0;
+    while (true) {
+      List<Long> ids =
+          jobsRepository.findOrphanedJobIds(leaseExpiredBefore, PageRequest.of(0, batchSize));
+      int settled = 0;
+      for (Long id : ids) {
+        if (settle(id, leaseExpiredBefore)) settled++;
+      }
+      total += settled;
+      if (ids.size() < batchSize || settled == 0) break;
+    }
+    if (total > 0) {
+      log.info("Settled {} jobs orphaned by their node", total);
+    }
+    return total;
+  }
+
+  private boolean settle(long id, ZonedDateTime leaseExpiredBefore) {
+    Optional<Job> found = jobsRepository.findById(id);
+    if (found.isEmpty()) return false;
+    Job job = found.get();
+
+    JobStatus status;
+    String message;
+    if (job.getCancelRequested()) {
+      status = JobStatus.CANCELLED;
+      message = "Job cancelled: " + ORPHANED_REASON;
+    } else if (job.getJobType() != null && JobService.DURABLE_QUEUE.equals(queueMode)) {
+      status = JobStatus.PENDING;
+      message = "Job returned to the queue: " + ORPHANED_REASON;
+    } else {
+      status = JobStatus.ERROR;
+      message = "Job failed: " + ORPHANED_REASON;
+    }
+    if (jobsRepository.abandon(id, status, leaseExpiredBefore) == 0) {
+      return false; // settled by another node, or its node is alive after all
+    }
+
+    log.warn("Job {} (node {}): {}", id, job.getWorkerId(), message);
+    job.setStatus(status);
+    long firstSeq = jobLogLinesRepository.findMaxSeqByJobId(id).map(seq -> seq + 1).orElse(0L);
+    JobContext.builder()
+        .jobLogLinesRepository(jobLogLinesRepository)
+        .jobLogIndexer(jobLogIndexer)
+        .job(job)
+        .firstSeq(firstSeq)
+        .build()
+        .write(message);
+    jobEventPublisher.publishStatus(id, status);
+    if (status != JobStatus.PENDING) {
+      try {
+        jobLogCompressor.archive(id);
+      } catch (RuntimeException e) {
+        log.warn("Could not compress log of job {}", id, e);
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes finished jobs, and their log lines and artifacts, once they are older than
+ * app.jobs.retention.max-age-days, so that the jobs table does not grow without limit.
+ *
+ * Jobs are deleted in batches of batchSize with set-based DELETE statements, each batch in its
+ * own transaction, so a sweep never loads jobs into memory or holds locks on many rows at once.
+ * Artifact files are deleted after their batch commits.
+ */
+@Service
+@Slf4j
+public class JobRetentionSweeper {
+  /** Statuses of jobs that have finished running and can be swept. */
+  public static final List<JobStatus> FINISHED_STATUSES =
+      List.of(JobStatus.COMPLETE, JobStatus.ERROR, JobStatus.CANCELLED);
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Autowired private JobLogTokensRepository jobLogTokensRepository;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Value("${app.jobs.retention.max-age-days:30}")
+  private long maxAgeDays;
+
+  @Value("${app.jobs.retention.batch-size:500}")
+  private int batchSize;
+
+  @Value("${app.jobs.retention.max-batches:100}")
+  private int maxBatches;
+
+  /**
+   * Deletes up to maxBatches batches of expired jobs.
+   *
+   * @return the number of jobs deleted
+   */
+  @Scheduled(
+      initialDelayString = "${app.jobs.retention.interval-ms:3600000}",
+      fixedDelayString = "${app.jobs.retention.interval-ms:3600000}")
+  public int sweep() {
+    if (maxAgeDays <= 0) return 0;
+
+    ZonedDateTime cutoff = ZonedDateTime.now().minusDays(maxAgeDays);
+    int total = 0;
+    for (int batch = 0; batch < maxBatches; batch++) {
+      Batch deleted = transactionTemplate.execute(status -> deleteBatch(cutoff));
+      // files cannot be rolled back, so they go only once the jobs are deleted for good
+      if (!deleted.ids().isEmpty()) {
+        jobArtifactStore.delete(deleted.ids());
+      }
+      total += deleted.count();
+      if (deleted.count() < batchSize) break;
+    }
+    if (total > 0) {
+      log.info("Deleted {} jobs finished before {}", total, cutoff);
+    }
+    return total;
+  }
+
+  /** Ids of the jobs in a batch, and how many of them were deleted. */
+  private record Batch(List<Long> ids, int count) {}
+
+  private Batch deleteBatch(ZonedDateTime cutoff) {
+    List<Long> ids =
+        jobsRepository.findIdsByStatusInAndUpdatedBefore(
+            FINISHED_STATUSES, cutoff, PageRequest.of(0, batchSize));
+    if (ids.isEmpty()) return new Batch(ids, 0);
+    jobLogLinesRepository.deleteByJobIdIn(ids);
+    jobLogArchivesRepository.deleteByJobIdIn(ids);
+    jobLogTokensRepository.deleteByJobIdIn(ids);
+    return new Batch(ids, jobsRepository.deleteByIds(ids));
+  }
+}
@@ -0,0 +1,266 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobScheduleInfo;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs jobs on cron schedules. Each run goes through JobService, so it is recorded as a Job
+ * with the usual log.
+ *
+ * Schedules are registered on every node, either in code with
+ * {@link #register(String, String, Supplier)} or with app.jobs.schedules.NAME.cron/type/params
+ * properties. Their shared state is a row in job_schedules: when a schedule fires, the node
+ * locks the row and starts a run only if the schedule is not paused, no node has already run
+ * this cron slot, and the job of the previous run is no longer pending or running.
+ */
+@Service
+@Slf4j
+public class JobScheduler {
+  @Autowired private JobService jobService;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private TaskScheduler taskScheduler;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private Environment env;
+
+  private static final Set<JobStatus> ACTIVE_STATUSES =
+      Set.of(JobStatus.PENDING, JobStatus.RUNNING);
+
+  private record Registration(
+      String name,
+      String cron,
+      CronExpression expression,
+      Supplier<? extends JobContextConsumer> factory,
+      ScheduledFuture<?> future) {}
+
+  /** Outcome of deciding whether to start a run: the job started, or why none was. */
+  private record Claim(Job job, String skipped) {
+    static Claim skipped(String reason) {
+      return new Claim(null, reason);
+    }
+  }
+
+  private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  /**
+   * Properties of a schedule configured as app.jobs.schedules.NAME.
+   *
+   * @param cron Spring cron expression (six fields, seconds first)
+   * @param type class name of the JobContextConsumer to run
+   * @param params the job as JSON, as stored by the durable queue; defaults to {}
+   */
+  public record ScheduleConfig(String cron, String type, String params) {}
+
+  /** Registers the schedules configured under app.jobs.schedules. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void registerConfiguredSchedules() {
+    Map<String, ScheduleConfig> configs =
+        Binder.get(env)
+            .bind("app.jobs.schedules", Bindable.mapOf(String.class, ScheduleConfig.class))
+            .orElse(Map.of());
+    configs.forEach(
+        (name, config) -> {
+          try {
+            Class<? extends JobContextConsumer> type =
+                Class.forName(config.type()).asSubclass(JobContextConsumer.class);
+            String params = config.params() != null ? config.params() : "{}";
+            mapper.readValue(params, type); // fail at startup rather than at the first run
+            register(name, config.cron(), () -> readJob(params, type));
+          } catch (Exception e) {
+            log.error("Cannot register job schedule {}: {}", name, e.getMessage());
+          }
+        });
+  }
+
+  private JobContextConsumer readJob(String params, Class<? extends JobContextConsumer> type) {
+    try {
+      return mapper.readValue(params, type);
+    } catch (Exception e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Registers a schedule, replacing any schedule of the same name on this node.
+   *
+   * @param name name of the schedule, unique across the application
+   * @param cron Spring cron expression (six fields, seconds first)
+   * @param factory creates the job to run each time the schedule fires
+   * @throws IllegalArgumentException if cron is not a valid cron expression
+   */
+  public void register(String name, String cron, Supplier<? extends JobContextConsumer> factory) {
+    CronExpression expression = CronExpression.parse(cron);
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            if (!jobSchedulesRepository.existsById(name)) {
+              jobSchedulesRepository.save(JobSchedule.builder().name(name).build());
+            }
+          });
+    } catch (DataIntegrityViolationException e) {
+      // another node created the row at the same time
+    }
+
+    ScheduledFuture<?> future =
+        taskScheduler.schedule(() -> runScheduled(name), new CronTrigger(cron));
+    Registration previous =
+        registrations.put(name, new Registration(name, cron, expression, factory, future));
+    if (previous != null && previous.future() != null) {
+      previous.future().cancel(false);
+    }
+    log.info("Registered job schedule {} ({})", name, cron);
+  }
+
+  private void runScheduled(String name) {
+    try {
+      String message = fire(name, false);
+      log.info(message);
+    } catch (RuntimeException e) {
+      log.error("Job schedule {} failed to start a run", name, e);
+    }
+  }
+
+  /**
+   * Starts a run of a schedule now, even if it is paused or has already run in the current
+   * cron slot. The run is still skipped if the previous one has not finished.
+   *
+   * @param name name of the schedule
+   * @return a message saying whether a run was started
+   * @throws EntityNotFoundException if no schedule has that name
+   */
+  public String trigger(String name) {
+    return fire(name, true);
+  }
+
+  String fire(String name, boolean manual) {
+    Registration registration = registrationFor(name);
+    JobContextConsumer jobFunction = registration.factory().get();
+
+    Claim claim =
+        transactionTemplate.execute(status -> claimRun(registration, jobFunction, manual));
+    if (claim.job() == null) {
+      return claim.skipped();
+    }
+    Job job = claim.job();
+    if (job.getJobType() == null) {
+      // not in the durable queue: start it now that the schedule's transaction has committed
+      jobService.startJob(job, jobFunction);
+    }
+    return "Job schedule %s started job %d".formatted(name, job.getId());
+  }
+
+  private Claim claimRun(
+      Registration registration, JobContextConsumer jobFunction, boolean manual) {
+    String name = registration.name();
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findByNameForUpdate(name)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, name));
+    ZonedDateTime now = ZonedDateTime.now();
+
+    if (!manual && schedule.getPaused()) {
+      return Claim.skipped("Job schedule %s is paused".formatted(name));
+    }
+    if (!manual
+        && schedule.getLastFiredAt() != null
+        && registration.expression().next(schedule.getLastFiredAt()).isAfter(now)) {
+      return Claim.skipped(
+          "Job schedule %s already ran at %s".formatted(name, schedule.getLastFiredAt()));
+    }
+    if (schedule.getLastJobId() != null) {
+      JobStatus lastStatus = jobsRepository.findStatusById(schedule.getLastJobId()).orElse(null);
+      if (ACTIVE_STATUSES.contains(lastStatus)) {
+        return Claim.skipped(
+            "Job schedule %s skipped: job %d is still %s"
+                .formatted(name, schedule.getLastJobId(), lastStatus));
+      }
+    }
+
+    Job job = jobService.createJob(jobFunction);
+    schedule.setLastJobId(job.getId());
+    schedule.setLastFiredAt(now);
+    jobSchedulesRepository.save(schedule);
+    return new Claim(job, null);
+  }
+
+  /**
+   * Pauses or resumes a schedule on all nodes.
+   *
+   * @param name name of the schedule
+   * @param paused whether the schedule should be paused
+   * @throws EntityNotFoundException if no schedule has that name
+   */
+  public void setPaused(String name, boolean paused) {
+    registrationFor(name);
+    jobSchedulesRepository.setPaused(name, paused);
+  }
+
+  /** @return the schedules registered on this node, with their state, in order of name */
+  public List<JobScheduleInfo> listSchedules() {
+    ZonedDateTime now = ZonedDateTime.now();
+    return registrations.values().stream()
+        .sorted((a, b) -> a.name().compareTo(b.name()))
+        .map(
+            registration -> {
+              JobSchedule schedule =
+                  jobSchedulesRepository
+                      .findById(registration.name())
+                      .orElse(JobSchedule.builder().name(registration.name()).build());
+              JobStatus lastJobStatus =
+                  schedule.getLastJobId() == null
+                      ? null
+                      : jobsRepository.findStatusById(schedule.getLastJobId()).orElse(null);
+              return JobScheduleInfo.builder()
+                  .name(registration.name())
+                  .cron(registration.cron())
+                  .paused(schedule.getPaused())
+                  .lastJobId(schedule.getLastJobId())
+                  .lastJobStatus(lastJobStatus)
+                  .lastFiredAt(schedule.getLastFiredAt())
+                  .nextFireAt(schedule.getPaused() ? null : registration.expression().next(now))
+                  .build();
+            })
+        .toList();
+  }
+
+  private Registration registrationFor(String name) {
+    Registration registration = registrations.get(name);
+    if (registration == null) {
+      throw new EntityNotFoundException(JobSchedule.class, name);
+    }
+    return registration;
+  }
+}
@@ -1,44 +1,741 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyConflictException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.models.JobMetrics;
+import edu.ucsb.cs156.example.models.JobStatusCount;
+import edu.ucsb.cs156.example.models.JobStatusSummary;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 @Service
+@Slf4j
 public class JobService {
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Autowired private JobLogIndexer jobLogIndexer;
+
+  @Autowired private JobArtifactStore jobArtifactStore;
+
+  @Autowired private FairShareDispatcher fairShareDispatcher;
+
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JobEventPublisher jobEventPublisher;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private JobMetricsRecorder jobMetrics;
+
+  @Autowired private Environment env;
+
   @Lazy @Autowired private JobService self;
 
+  @Autowired
+  @Qualifier(JobExecutorConfig.JOB_EXECUTOR)
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  /** Value of app.jobs.queue.mode that stores jobs in the database for JobQueueWorker to run. */
+  public static final String DURABLE_QUEUE = "durable";
+
+  @Value("${app.jobs.queue.mode:memory}")
+  private String queueMode;
+
+  /** Value of app.jobs.scheduling that shares workers fairly between users. */
+  public static final String FAIR_SHARE = "fair-share";
+
+  /** How jobs run in memory wait for a worker: fifo, or fair-share (see FairShareDispatcher). */
+  @Value("${app.jobs.scheduling:fair-share}")
+  private String scheduling;
+
+  @Value("${app.jobs.log.flush-lines:100}")
+  private int logFlushLines;
+
+  @Value("${app.jobs.log.flush-bytes:65536}")
+  private long logFlushBytes;
+
+  @Value("${app.jobs.log.flush-interval-ms:1000}")
+  private long logFlushIntervalMs;
+
+  @Value("${app.jobs.log.collapse-repeats:true}")
+  private boolean logCollapseRepeats;
+
+  /** Most lines a job may log per second, or 0 for no limit. */
+  @Value("${app.jobs.log.max-lines-per-second:1000}")
+  private int logMaxLinesPerSecond;
+
+  /** Most a job may log in all, or 0 for no limit. */
+  @Value("${app.jobs.log.max-bytes:10485760}")
+  private long logMaxBytes;
+
+  /** Least time between writes of a job's progress to the database. */
+  @Value("${app.jobs.progress.interval-ms:1000}")
+  private long progressIntervalMs;
+
+  /** Largest state a job may save with JobContext.checkpoint, in bytes. */
+  @Value("${app.jobs.checkpoint.max-bytes:65536}")
+  private int checkpointMaxBytes;
+
+  /** How long shutdown waits for queued jobs to stop before they are returned to the queue. */
+  @Value("${app.jobs.shutdown.grace-ms:10000}")
+  private long shutdownGraceMs;
+
+  static final String SHUTDOWN_REASON = "Job interrupted: node shutting down";
+
+  private volatile boolean shuttingDown = false;
+
+  /** How many subtasks JobContext.fork runs at once by default, or 0 for one per processor. */
+  @Value("${app.jobs.subtasks.parallelism:0}")
+  private int subtaskParallelism;
+
+  /** How long after it finishes a job is still returned for a repeat of its idempotency key. */
+  @Value("${app.jobs.idempotency.window-ms:600000}")
+  private long idempotencyWindowMs;
+
+  private static final int MAX_IDEMPOTENT_SUBMIT_ATTEMPTS = 3;
+
+  /** Maximum run time of a job in ms, or 0 for none; app.jobs.timeout-ms.TYPE overrides it. */
+  @Value("${app.jobs.default-timeout-ms:0}")
+  private long defaultTimeoutMs;
+
+  private final Map<Long, JobContext> runningContexts = new ConcurrentHashMap<>();
+
+  private final Map<Long, PipelineRun> runningPipelines = new ConcurrentHashMap<>();
+
+  // jobs launched on this node, including those still waiting for a worker
+  private final Set<Long> launchedJobIds = ConcurrentHashMap.newKeySet();
+
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return submit(jobFunction, null, null);
+  }
+
+  /**
+   * Runs a job, unless a job was already submitted with the same idempotency key and is still
+   * pending or running, or finished less than app.jobs.idempotency.window-ms ago; then that
+   * job is returned instead, so that retried or double-clicked launches run the job once.
+   *
+   * Keys are scoped to the submitting user, so two users choosing the same key do not see each
+   * other's jobs. They are unique per user in the jobs table, so concurrent submissions by a
+   * user with the same key are safe: only one of them can save its job, and the others return
+   * it.
+   *
+   * @param jobFunction the job
+   * @param idempotencyKey key chosen by the client, or null to always run the job
+   * @return the new job, or the earlier job submitted with the same key
+   * @throws IdempotencyKeyConflictException if the key is held, within the window, by a job
+   *     with a different job function or different parameters
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, String idempotencyKey) {
+    if (idempotencyKey == null || idempotencyKey.isBlank()) {
+      return runAsJob(jobFunction);
+    }
+
+    User user = currentUserService.getUser();
+    Long userId = user != null ? user.getId() : null;
+    String requestHash = requestHash(jobFunction);
+    for (int attempt = 1; ; attempt++) {
+      Optional<Job> existing =
+          jobsRepository.findByCreatedByIdAndIdempotencyKey(userId, idempotencyKey);
+      if (existing.isPresent()) {
+        Job job = existing.get();
+        if (isWithinIdempotencyWindow(job)) {
+          if (!Objects.equals(requestHash, job.getRequestHash())) {
+            throw new IdempotencyKeyConflictException(idempotencyKey, job.getId());
+          }
+          return job;
+        }
+        // expired: the key is free for any job, whatever it was used for before
+        jobsRepository.releaseIdempotencyKey(job.getId(), idempotencyKey);
+      }
+
+      try {
+        return submit(jobFunction, idempotencyKey, requestHash);
+      } catch (DataIntegrityViolationException e) {
+        // another submission saved a job with this key first; look it up again
+        if (attempt >= MAX_IDEMPOTENT_SUBMIT_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private Job submit(JobContextConsumer jobFunction, String idempotencyKey, String requestHash) {
+    if (DURABLE_QUEUE.equals(queueMode) && isQueueable(jobFunction)) {
+      return enqueue(jobFunction, idempotencyKey, requestHash);
+    }
+
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .status(JobStatus.RUNNING)
+            .idempotencyKey(idempotencyKey)
+            .requestHash(requestHash)
+            .build();
+
+    jobsRepository.save(job);
+    launch(job, jobFunction);
+    return job;
+  }
+
+  private boolean isWithinIdempotencyWindow(Job job) {
+    if (job.getStatus() == JobStatus.PENDING || job.getStatus() == JobStatus.RUNNING) {
+      return true;
+    }
+    ZonedDateTime finishedAt = job.getUpdatedAt() != null ? job.getUpdatedAt() : job.getCreatedAt();
+    return finishedAt == null
+        || finishedAt.isAfter(ZonedDateTime.now().minus(Duration.ofMillis(idempotencyWindowMs)));
+  }
+
+  /**
+   * Identifies a job function and its parameters, so that an idempotency key reused for a
+   * different job can be told apart from a retry. Jobs that cannot be serialized as JSON are
+   * identified by their class alone. Lambdas are not identified at all, as the names of their
+   * hidden classes differ between JVMs and builds; their jobs are identified by the key alone.
+   *
+   * @param jobFunction the job
+   * @return an MD5 hex digest of the job's class name and JSON, or null for a lambda
+   */
+  String requestHash(JobContextConsumer jobFunction) {
+    if (jobFunction.getClass().isHidden()) {
+      return null;
+    }
+    String request = jobFunction.getClass().getName();
+    if (isQueueable(jobFunction)) {
+      try {
+        request += mapper.writeValueAsString(jobFunction);
+      } catch (JsonProcessingException e) {
+        // identified by class alone
+      }
+    }
+    return DigestUtils.md5DigestAsHex(request.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Saves a job without starting it, for callers that must record the job in a transaction
+   * of their own before it runs. In durable mode queueable jobs are queued as usual, and run
+   * once the transaction commits; otherwise the job is saved as pending and must be started
+   * with {@link #startJob(Job, JobContextConsumer)} after the transaction commits.
+   *
+   * @param jobFunction the job
+   * @return the saved job
+   */
+  public Job createJob(JobContextConsumer jobFunction) {
+    if (DURABLE_QUEUE.equals(queueMode) && isQueueable(jobFunction)) {
+      return enqueue(jobFunction, null, null);
+    }
 
+    Job job =
+        Job.builder().createdBy(currentUserService.getUser()).status(JobStatus.PENDING).build();
     jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+    return job;
+  }
 
+  /**
+   * Starts a job saved by {@link #createJob(JobContextConsumer)} that is not in the durable
+   * queue.
+   *
+   * @param job the job
+   * @param jobFunction the job function it was created for
+   * @return the job
+   */
+  public Job startJob(Job job, JobContextConsumer jobFunction) {
+    job.setStatus(JobStatus.RUNNING);
+    jobsRepository.save(job);
+    launch(job, jobFunction);
     return job;
   }
 
-  @Async
-  public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+  /**
+   * Runs a pipeline of steps as one job. The returned job stands for the whole pipeline: its
+   * log records when each step starts and ends, and it finishes as complete if every step
+   * completes, cancelled if it was cancelled, and error otherwise. Each step runs as a job of
+   * its own, with its own log, whose parentJobId is the id of the returned job.
+   *
+   * Pipelines always run in memory, also when app.jobs.queue.mode is durable.
+   *
+   * @param pipeline the steps
+   * @return the job for the whole pipeline
+   */
+  public Job runPipeline(JobPipeline pipeline) {
+    User user = currentUserService.getUser();
+    Job parent = Job.builder().createdBy(user).status(JobStatus.RUNNING).build();
+    jobsRepository.save(parent);
+
+    Map<String, Job> stepJobs = new LinkedHashMap<>();
+    for (JobPipeline.Step step : pipeline.getSteps()) {
+      Job stepJob =
+          Job.builder()
+              .createdBy(user)
+              .status(JobStatus.PENDING)
+              .parentJobId(parent.getId())
+              .stepName(step.name())
+              .build();
+      jobsRepository.save(stepJob);
+      stepJobs.put(step.name(), stepJob);
+    }
+
+    // written line by line, as steps start and finish on different threads
+    JobContext parentLog =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .jobLogIndexer(jobLogIndexer)
+            .job(parent)
+            .jobEventPublisher(jobEventPublisher)
+            .build();
+    PipelineRun run = new PipelineRun(this, pipeline, parent, parentLog, stepJobs);
+    runningPipelines.put(parent.getId(), run);
+    jobEventPublisher.publishStatus(parent.getId(), parent.getStatus());
+    run.start();
+    return parent;
+  }
 
+  /**
+   * Marks a step of a pipeline as running, unless the step was cancelled on its own while it
+   * waited on its dependencies.
+   *
+   * @return whether the step may start; if not, it is left cancelled
+   */
+  boolean markStepRunning(Job job) {
+    if (jobsRepository.startPending(job.getId()) == 0) {
+      job.setStatus(JobStatus.CANCELLED);
+      return false;
+    }
+    job.setStatus(JobStatus.RUNNING);
+    return true;
+  }
+
+  /**
+   * Starts a step of a pipeline marked as running by {@link #markStepRunning(Job)}.
+   *
+   * @return a future completed when the step has finished
+   * @throws JobQueueFullException if the job executor rejected the step
+   */
+  CompletableFuture<Job> startStep(Job job, JobContextConsumer jobFunction) {
+    return launch(job, jobFunction);
+  }
+
+  /** Marks a job that will not run, such as a skipped step of a pipeline, as cancelled. */
+  void skipStep(Job job, String reason) {
+    job.setStatus(JobStatus.CANCELLED);
+    JobContext.builder()
+        .jobLogLinesRepository(jobLogLinesRepository)
+        .jobLogIndexer(jobLogIndexer)
+        .job(job)
+        .build()
+        .log(reason);
+    jobsRepository.save(job);
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+  }
+
+  /** Records the outcome of a pipeline once all its steps have finished or been skipped. */
+  void finishPipeline(PipelineRun run, JobStatus status) {
+    Job parent = run.getParent();
+    run.getParentLog().write("Pipeline " + status);
+    parent.setStatus(status);
+    jobsRepository.save(parent);
+    runningPipelines.remove(parent.getId());
+    jobEventPublisher.publishStatus(parent.getId(), parent.getStatus());
+    try {
+      jobLogCompressor.archive(parent.getId());
+    } catch (RuntimeException e) {
+      log.warn("Could not compress log of job {}", parent.getId(), e);
+    }
+  }
+
+  private CompletableFuture<Job> launch(Job job, JobContextConsumer jobFunction) {
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+    launchedJobIds.add(job.getId());
+    try {
+      if (FAIR_SHARE.equals(scheduling)) {
+        return fairShareDispatcher.submit(job, jobFunction);
+      }
+      return self.runJobAsync(job, jobFunction);
+    } catch (TaskRejectedException | JobQueueFullException e) {
+      launchedJobIds.remove(job.getId());
+      int queueDepth = queuedJobCount();
+      jobMetrics.recordOutcome(JobMetricsRecorder.jobType(jobFunction), "rejected");
+      job.setStatus(JobStatus.ERROR);
+      JobContext.builder()
+          .jobLogLinesRepository(jobLogLinesRepository)
+          .jobLogIndexer(jobLogIndexer)
+          .job(job)
+          .build()
+          .log("Job rejected: job queue is full (%d jobs waiting)".formatted(queueDepth));
+      jobsRepository.save(job);
+      jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+      throw new JobQueueFullException(queueDepth);
+    }
+  }
+
+  /**
+   * Jobs can only be queued in the database if they can be rebuilt from their class name and
+   * JSON, which rules out lambdas and anonymous or local classes; those always run in memory.
+   *
+   * @param jobFunction the job
+   * @return whether the job can be put in the durable queue
+   */
+  static boolean isQueueable(JobContextConsumer jobFunction) {
+    Class<?> type = jobFunction.getClass();
+    return !(type.isHidden()
+        || type.isSynthetic()
+        || type.isAnonymousClass()
+        || type.isLocalClass());
+  }
+
+  private Job enqueue(
+      JobContextConsumer jobFunction, String idempotencyKey, String requestHash) {
+    String jobParams;
+    try {
+      jobParams = mapper.writeValueAsString(jobFunction);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(
+          "Cannot queue job %s: %s".formatted(jobFunction.getClass().getName(), e.getMessage()), e);
+    }
+
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .status(JobStatus.PENDING)
+            .jobType(jobFunction.getClass().getName())
+            .jobParams(jobParams)
+            .idempotencyKey(idempotencyKey)
+            .requestHash(requestHash)
+            .build();
+    jobsRepository.save(job);
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+    return job;
+  }
+
+  @Async(JobExecutorConfig.JOB_EXECUTOR)
+  public CompletableFuture<Job> runJobAsync(Job job, JobContextConsumer jobFunction) {
+    // a queued job may be run again after its node died; continue its log where it stopped
+    long firstSeq =
+        jobLogLinesRepository.findMaxSeqByJobId(job.getId()).map(seq -> seq + 1).orElse(0L);
+    JobContext context =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .jobLogIndexer(jobLogIndexer)
+            .jobArtifactStore(jobArtifactStore)
+            .job(job)
+            .jobEventPublisher(jobEventPublisher)
+            .firstSeq(firstSeq)
+            .flushLines(logFlushLines)
+            .flushBytes(logFlushBytes)
+            .flushIntervalMs(logFlushIntervalMs)
+            .collapseRepeats(logCollapseRepeats)
+            .maxLinesPerSecond(logMaxLinesPerSecond)
+            .maxLogBytes(logMaxBytes)
+            .subtaskParallelism(subtaskParallelism)
+            .progressIntervalMs(progressIntervalMs)
+            .checkpoint(job.getCheckpoint())
+            .checkpointMaxBytes(checkpointMaxBytes)
+            .build();
+    if (job.getCheckpointAt() != null) {
+      context.write("Resuming from checkpoint saved at %s".formatted(job.getCheckpointAt()));
+    }
+    String jobType = JobMetricsRecorder.jobType(jobFunction);
+    if (job.getCreatedAt() != null) {
+      jobMetrics.recordQueueWait(
+          jobType, Duration.between(job.getCreatedAt(), ZonedDateTime.now()).toMillis());
+    }
+    runningContexts.put(job.getId(), context);
+    context.attach(Thread.currentThread(), timeoutMs(jobFunction));
+
+    long startNanos = System.nanoTime();
     try {
       jobFunction.accept(context);
+      context.checkCancelled();
+      job.setStatus(JobStatus.COMPLETE);
     } catch (Exception e) {
-      job.setStatus("error");
-      context.log(e.getMessage());
-      return;
+      if (isInterruptedByShutdown(job, context)) {
+        // picked up again by a node that is still running, from its last checkpoint
+        job.setStatus(JobStatus.PENDING);
+        context.write(SHUTDOWN_REASON);
+      } else if (context.isCancelled()) {
+        // an InterruptedException or similar thrown because the job was stopped
+        job.setStatus(context.isTimedOut() ? JobStatus.ERROR : JobStatus.CANCELLED);
+        context.write(context.getCancelReason());
+      } else {
+        job.setStatus(JobStatus.ERROR);
+        context.write(e.getMessage());
+      }
+    } finally {
+      context.detach();
+      jobMetrics.recordFinish(
+          jobType, (System.nanoTime() - startNanos) / 1_000_000, job.getStatus().getValue());
+      context.summarizeSuppressed();
+      context.flush();
+      context.flushProgress();
+      runningContexts.remove(job.getId());
+      launchedJobIds.remove(job.getId());
+    }
+
+    if (job.getStatus() == JobStatus.PENDING) {
+      // returned to the queue by requeueQueuedJobsOnShutdown
+      return CompletableFuture.completedFuture(job);
     }
 
-    job.setStatus("complete");
     jobsRepository.save(job);
+    jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+    try {
+      jobLogCompressor.archive(job.getId());
+    } catch (RuntimeException e) {
+      // the log stays readable as lines; only the space saving is lost
+      log.warn("Could not compress log of job {}", job.getId(), e);
+    }
+    return CompletableFuture.completedFuture(job);
+  }
+
+  private boolean isInterruptedByShutdown(Job job, JobContext context) {
+    return shuttingDown
+        && SHUTDOWN_REASON.equals(context.getCancelReason())
+        && job.getJobType() != null;
+  }
+
+  /**
+   * Stops the jobs from the durable queue running on this node when the application shuts
+   * down, e.g. for a redeploy, and returns them to the queue, so that another node (or this
+   * one, once restarted) resumes them from their last checkpoint straight away rather than
+   * once their lease expires. The claim does not count towards app.jobs.queue.max-attempts.
+   * Waits at most app.jobs.shutdown.grace-ms for the jobs to stop; any still running then are
+   * left for their lease to expire.
+   *
+   * Jobs run in memory cannot be run again, and are left to finish or be stopped with the
+   * executor.
+   */
+  @PreDestroy
+  public void requeueQueuedJobsOnShutdown() throws InterruptedException {
+    shuttingDown = true;
+    List<JobContext> stopping =
+        runningContexts.values().stream()
+            .filter(context -> context.getJob().getJobType() != null)
+            .toList();
+    stopping.forEach(context -> context.cancel(SHUTDOWN_REASON, false));
+
+    long deadline = System.nanoTime() + shutdownGraceMs * 1_000_000;
+    while (stopping.stream().anyMatch(runningContexts::containsValue)
+        && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+    }
+    for (JobContext context : stopping) {
+      Job job = context.getJob();
+      if (job.getStatus() == JobStatus.PENDING && !runningContexts.containsValue(context)) {
+        jobsRepository.release(job.getId(), job.getWorkerId());
+        jobEventPublisher.publishStatus(job.getId(), job.getStatus());
+      }
+    }
+  }
+
+  /**
+   * Looks up how long a job may run: app.jobs.timeout-ms.SIMPLE_CLASS_NAME if set, otherwise
+   * app.jobs.default-timeout-ms.
+   *
+   * @param jobFunction the job
+   * @return the timeout in ms, or 0 for no limit
+   */
+  long timeoutMs(JobContextConsumer jobFunction) {
+    String type = jobFunction.getClass().getSimpleName();
+    if (type.isEmpty() || !isQueueable(jobFunction)) {
+      return defaultTimeoutMs;
+    }
+    return env.getProperty("app.jobs.timeout-ms." + type, Long.class, defaultTimeoutMs);
+  }
+
+  /**
+   * Cancels a job. A pending job, or one waiting for its turn in fair-share mode, is cancelled
+   * straight away; a running job is asked to stop, and is marked cancelled once it does.
+   *
+   * @param jobId id of the job
+   * @return a message saying what was done
+   */
+  public String cancelJob(long jobId) {
+    JobStatus status =
+        jobsRepository
+            .findStatusById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+
+    if (status == JobStatus.PENDING && jobsRepository.cancelPending(jobId) > 0) {
+      jobEventPublisher.publishStatus(jobId, JobStatus.CANCELLED);
+      return "Job %d cancelled".formatted(jobId);
+    }
+
+    if (cancelLocally(jobId, "Job cancelled")) {
+      return "Cancellation of job %d requested".formatted(jobId);
+    }
+    if (jobsRepository.requestCancel(jobId) > 0) {
+      // running on another node, which picks this up in enforceJobLimits()
+      return "Cancellation of job %d requested".formatted(jobId);
+    }
+    return "Job %d is not running (status %s)"
+        .formatted(jobId, jobsRepository.findStatusById(jobId).orElse(status));
+  }
+
+  /**
+   * Asks a job or pipeline running on this node to stop, or cancels a job waiting for its turn
+   * on this node.
+   *
+   * @param jobId id of the job
+   * @param reason why it is being stopped
+   * @return whether the job was running or waiting on this node
+   */
+  boolean cancelLocally(long jobId, String reason) {
+    PipelineRun pipeline = runningPipelines.get(jobId);
+    if (pipeline != null) {
+      pipeline.cancel(reason);
+      return true;
+    }
+    JobContext context = runningContexts.get(jobId);
+    if (context != null) {
+      context.cancel(reason, false);
+      return true;
+    }
+    // saved as running, but still waiting for its turn in fair-share mode
+    return fairShareDispatcher.remove(
+        jobId,
+        job -> {
+          launchedJobIds.remove(jobId);
+          skipStep(job, reason);
+        });
+  }
+
+  /**
+   * Stops running jobs that have run past their timeout, or that were cancelled through
+   * another node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.limits-check-interval-ms:1000}")
+  public void enforceJobLimits() {
+    if (runningContexts.isEmpty() && runningPipelines.isEmpty()) {
+      return;
+    }
+    runningContexts.forEach(
+        (id, context) -> {
+          if (context.isPastDeadline()) {
+            context.cancel("Job timed out", true);
+          }
+        });
+    Set<Long> ids = new HashSet<>(runningContexts.keySet());
+    ids.addAll(runningPipelines.keySet());
+    for (Long id : jobsRepository.findCancelRequestedIds(ids)) {
+      cancelLocally(id, "Job cancelled");
+    }
+  }
+
+  /**
+   * Returns the job metrics of this node, with the number of jobs running and waiting now.
+   *
+   * @return the metrics
+   */
+  public JobMetrics getMetrics() {
+    return JobMetrics.builder()
+        .running(runningContexts.size())
+        .queued(queuedJobCount())
+        .pending(jobsRepository.countByStatus(JobStatus.PENDING))
+        .types(jobMetrics.snapshot())
+        .build();
+  }
+
+  /**
+   * Counts the jobs with each status across all nodes, and finds the oldest running job, with
+   * a single aggregate query.
+   *
+   * @return the counts, with a zero for each status no job has
+   */
+  public JobStatusSummary getStatusSummary() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (JobStatus status : JobStatus.values()) {
+      counts.put(status.getValue(), 0L);
+    }
+    JobStatusSummary.JobStatusSummaryBuilder summary = JobStatusSummary.builder();
+    long total = 0;
+    for (JobStatusCount count : jobsRepository.countJobsByStatus()) {
+      total += count.getCount();
+      if (count.getStatus() == null) continue; // counted in the total only
+      counts.put(count.getStatus().getValue(), count.getCount());
+      if (count.getStatus() == JobStatus.RUNNING) {
+        summary
+            .oldestRunningJobId(count.getOldestJobId())
+            .oldestRunningCreatedAt(count.getOldestCreatedAt());
+      }
+    }
+    return summary.counts(counts).total(total).build();
+  }
+
+  private int queuedJobCount() {
+    int queued = jobExecutor.getQueueSize();
+    if (FAIR_SHARE.equals(scheduling)) {
+      queued += fairShareDispatcher.queuedCount();
+    }
+    return queued;
+  }
+
+  /** @return ids of the jobs running on this node */
+  public Set<Long> runningJobIds() {
+    return Set.copyOf(runningContexts.keySet());
+  }
+
+  /**
+   * @return ids of the jobs this node is responsible for: those running, those launched and
+   *     waiting for a worker, and pipelines
+   */
+  public Set<Long> ownedJobIds() {
+    Set<Long> ids = new HashSet<>(launchedJobIds);
+    ids.addAll(runningContexts.keySet());
+    ids.addAll(runningPipelines.keySet());
+    return ids;
+  }
+
+  /** Writes the buffered log lines of running jobs that have not flushed recently. */
+  @Scheduled(fixedDelayString = "${app.jobs.log.flush-interval-ms:1000}")
+  public void flushRunningJobLogs() {
+    runningContexts.values().forEach(JobContext::flushIfDue);
   }
 
   public String getJobLogs(Long jobId) {
@@ -47,7 +744,70 @@ public class JobService {
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
 
+    List<String> lines = jobLogLinesRepository.findMessagesByJobId(jobId);
+    if (!lines.isEmpty()) {
+      return String.join("\n", lines);
+    }
+    // lines are read first: a finished job's lines may be archived between the two reads,
+    // but once archived they stay archived
+    Optional<JobLogArchive> archive = jobLogArchivesRepository.findById(jobId);
+    if (archive.isPresent()) {
+      return JobLogCompressor.gunzip(archive.get().getData());
+    }
+    // jobs that ran before job_log_lines existed kept their whole log on the job row
     String log = job.getLog();
     return log != null ? log : "";
   }
+
+  /**
+   * Returns the compressed log of a finished job, for sending to clients that accept gzip
+   * without decompressing it.
+   *
+   * @param jobId id of the job
+   * @return the gzip-compressed log, or empty if the job's log is not archived
+   */
+  public Optional<byte[]> getCompressedJobLogs(long jobId) {
+    return jobLogArchivesRepository.findById(jobId).map(JobLogArchive::getData);
+  }
+
+  /**
+   * Returns the lines of a job's log from offset onwards, so that clients watching a job only
+   * fetch what is new since their last poll.
+   *
+   * @param jobId id of the job
+   * @param offset line number (0-based) of the first line to return
+   * @param maxLines maximum number of lines to return
+   * @return the new lines, the offset to ask for next time, and the job's status
+   */
+  public JobLogTail tailJobLogs(long jobId, long offset, int maxLines) {
+    JobStatus status =
+        jobsRepository
+            .findStatusById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+
+    int limit = Math.max(maxLines, 1);
+    List<String> lines =
+        jobLogLinesRepository.findMessagesByJobIdFromSeq(jobId, offset, PageRequest.of(0, limit));
+    if (lines.isEmpty()) {
+      Optional<JobLogArchive> archive = jobLogArchivesRepository.findById(jobId);
+      if (archive.isPresent()) {
+        String archivedLog = JobLogCompressor.gunzip(archive.get().getData());
+        lines = Arrays.stream(archivedLog.split("\n", -1)).skip(offset).limit(limit).toList();
+      } else if (offset == 0) {
+        String legacyLog = jobsRepository.findById(jobId).map(Job::getLog).orElse(null);
+        if (legacyLog != null) {
+          lines = Arrays.stream(legacyLog.split("\n", -1)).limit(limit).toList();
+        }
+      }
+    }
+
+    return JobLogTail.builder()
+        .jobId(jobId)
+        .offset(offset)
+        .lines(lines)
+        .nextOffset(offset + lines.size())
+        .status(status)
+        .running(!status.isFinished())
+        .build();
+  }
 }
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.HistogramSnapshot;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative durations in milliseconds, safe to record into from
+ * many job threads at once.
+ *
+ * Values below 16 get a bucket each; above that each power of two is split into 8 buckets, so
+ * percentiles are accurate to within 12.5% while the whole histogram is 488 counters. Recording
+ * is one atomic increment plus two LongAdder updates and one accumulator update.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+  /**
+   * Records one value.
+   *
+   * @param valueMs the value in milliseconds; negative values are recorded as 0
+   */
+  public void record(long valueMs) {
+    long value = Math.max(valueMs, 0);
+    counts.incrementAndGet(bucket(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /** @return the number of values recorded */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Summarizes the values recorded so far. Values recorded while this runs may or may not be
+   * included.
+   *
+   * @return count, mean, 50th/90th/99th percentiles and maximum
+   */
+  public HistogramSnapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    long maxMs = max.get();
+    return HistogramSnapshot.builder()
+        .count(total)
+        .meanMs(total == 0 ? 0 : (double) sum.sum() / count.sum())
+        .p50Ms(percentile(copy, total, 0.50, maxMs))
+        .p90Ms(percentile(copy, total, 0.90, maxMs))
+        .p99Ms(percentile(copy, total, 0.99, maxMs))
+        .maxMs(maxMs)
+        .build();
+  }
+
+  private static long percentile(long[] counts, long total, double quantile, long maxMs) {
+    if (total == 0) return 0;
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) return Math.min(upperBound(i), maxMs);
+    }
+    return maxMs;
+  }
+
+  static int bucket(long value) {
+    if (value < 2 * SUB_BUCKETS) return (int) value;
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  static long upperBound(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) return bucket;
+    int shift = bucket / SUB_BUCKETS - 1;
+    long mantissa = bucket - (long) shift * SUB_BUCKETS;
+    return ((mantissa + 1) << shift) - 1;
+  }
+}
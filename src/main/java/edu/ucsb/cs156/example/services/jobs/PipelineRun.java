@@ -0,0 +1,148 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks one run of a JobPipeline: starts each step as soon as all its dependencies have
+ * completed, skips the steps downstream of a step that did not complete, and finishes the
+ * parent job once every step has settled.
+ *
+ * State changes happen on whichever job thread finishes a step, so all of it is either
+ * immutable after construction or atomic.
+ */
+@Slf4j
+class PipelineRun {
+  private final JobService jobService;
+  private final Job parent;
+  private final JobContext parentLog;
+  private final Map<String, JobPipeline.Step> steps = new HashMap<>();
+  private final Map<String, Job> stepJobs;
+  private final Map<String, AtomicInteger> waitingOn = new HashMap<>();
+  private final Map<String, List<String>> dependents = new HashMap<>();
+  private final Set<String> settled = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger unsettled;
+  private final AtomicBoolean allComplete = new AtomicBoolean(true);
+  private volatile String cancelReason;
+
+  PipelineRun(
+      JobService jobService,
+      JobPipeline pipeline,
+      Job parent,
+      JobContext parentLog,
+      Map<String, Job> stepJobs) {
+    this.jobService = jobService;
+    this.parent = parent;
+    this.parentLog = parentLog;
+    this.stepJobs = Map.copyOf(stepJobs);
+    for (JobPipeline.Step step : pipeline.getSteps()) {
+      steps.put(step.name(), step);
+      waitingOn.put(step.name(), new AtomicInteger(step.dependsOn().size()));
+      dependents.put(step.name(), new ArrayList<>());
+      step.dependsOn().forEach(dependency -> dependents.get(dependency).add(step.name()));
+    }
+    this.unsettled = new AtomicInteger(steps.size());
+  }
+
+  /** @return the parent job */
+  Job getParent() {
+    return parent;
+  }
+
+  /** @return the context the parent job logs step transitions to */
+  JobContext getParentLog() {
+    return parentLog;
+  }
+
+  /** Starts the steps that have no dependencies. */
+  void start() {
+    steps.values().stream()
+        .filter(step -> step.dependsOn().isEmpty())
+        .map(JobPipeline.Step::name)
+        .toList()
+        .forEach(this::launch);
+  }
+
+  /**
+   * Stops the pipeline: running steps are cancelled and no further steps start.
+   *
+   * @param reason why the pipeline is being stopped
+   */
+  void cancel(String reason) {
+    cancelReason = reason;
+    stepJobs.values().forEach(job -> jobService.cancelLocally(job.getId(), reason));
+  }
+
+  private void launch(String name) {
+    Job job = stepJobs.get(name);
+    if (cancelReason != null) {
+      skip(name, "Step %s not started: %s".formatted(name, cancelReason));
+      return;
+    }
+    if (!jobService.markStepRunning(job)) {
+      // the step itself was cancelled while it waited on its dependencies
+      finished(name, JobStatus.CANCELLED);
+      return;
+    }
+
+    parentLog.write("Step %s started (job %d)".formatted(name, job.getId()));
+    CompletableFuture<Job> future;
+    try {
+      future = jobService.startStep(job, steps.get(name).job());
+    } catch (JobQueueFullException e) {
+      finished(name, job.getStatus());
+      return;
+    }
+    future.whenComplete(
+        (done, e) -> {
+          if (e != null) {
+            log.error("Pipeline step {} (job {}) failed", name, job.getId(), e);
+          }
+          finished(name, e == null ? job.getStatus() : JobStatus.ERROR);
+        });
+  }
+
+  private void skip(String name, String reason) {
+    if (!settled.add(name)) return;
+    jobService.skipStep(stepJobs.get(name), reason);
+    afterSettled(name, JobStatus.CANCELLED);
+  }
+
+  private void finished(String name, JobStatus status) {
+    if (!settled.add(name)) return;
+    afterSettled(name, status);
+  }
+
+  private void afterSettled(String name, JobStatus status) {
+    parentLog.write("Step %s %s (job %d)".formatted(name, status, stepJobs.get(name).getId()));
+    boolean complete = status == JobStatus.COMPLETE;
+    if (!complete) {
+      allComplete.set(false);
+    }
+    for (String dependent : dependents.get(name)) {
+      if (!complete) {
+        skip(dependent, "Step %s skipped: step %s is %s".formatted(dependent, name, status));
+      } else if (waitingOn.get(dependent).decrementAndGet() == 0) {
+        launch(dependent);
+      }
+    }
+    if (unsettled.decrementAndGet() == 0) {
+      JobStatus pipelineStatus =
+          cancelReason != null
+              ? JobStatus.CANCELLED
+              : allComplete.get() ? JobStatus.COMPLETE : JobStatus.ERROR;
+      jobService.finishPipeline(this, pipelineStatus);
+    }
+  }
+}
@@ -58,5 +58,19 @@ public class ApiControllerTests extends ControllerTestCase {
                 assertEquals("String with id 7 not found", json.get("message"));
         }
 
-}
+        @Test
+        public void test_that_job_queue_full_returns_429_with_queue_depth() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/dummycontroller/queuefull"))
+                                .andExpect(status().isTooManyRequests()).andReturn();
+
+                // assert
 
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("JobQueueFullException", json.get("type"));
+                assertEquals("Job queue is full (42 jobs waiting); try again later", json.get("message"));
+                assertEquals(42, json.get("queueDepth"));
+        }
+
+}
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
 
 
 /**
@@ -23,4 +24,9 @@ public class DummyController extends ApiController {
         }
         throw new EntityNotFoundException(String.class, id);
     }
+
+    @GetMapping("/queuefull")
+    public String queueFull() throws JobQueueFullException {
+        throw new JobQueueFullException(42);
+    }
 }
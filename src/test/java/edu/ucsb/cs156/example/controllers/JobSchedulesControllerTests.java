@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobScheduleInfo;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = JobSchedulesController.class)
+public class JobSchedulesControllerTests extends ControllerTestCase {
+
+  @MockitoBean UserRepository userRepository;
+
+  @MockitoBean JobScheduler jobScheduler;
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_list_schedules() throws Exception {
+    mockMvc.perform(get("/api/jobs/schedules")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_schedules() throws Exception {
+    // arrange
+    List<JobScheduleInfo> schedules =
+        List.of(
+            JobScheduleInfo.builder().name("refresh").cron("0 0 * * * *").lastJobId(3L).build());
+    when(jobScheduler.listSchedules()).thenReturn(schedules);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/schedules")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(schedules), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_pause_and_resume_schedule() throws Exception {
+    MvcResult paused =
+        mockMvc
+            .perform(put("/api/jobs/schedules/pause?name=refresh").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult resumed =
+        mockMvc
+            .perform(put("/api/jobs/schedules/resume?name=refresh").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    verify(jobScheduler).setPaused("refresh", true);
+    verify(jobScheduler).setPaused("refresh", false);
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job schedule refresh paused")),
+        paused.getResponse().getContentAsString());
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job schedule refresh resumed")),
+        resumed.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_trigger_schedule() throws Exception {
+    when(jobScheduler.trigger("refresh")).thenReturn("Job schedule refresh started job 7");
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/schedules/trigger?name=refresh").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job schedule refresh started job 7")),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_404_for_unknown_schedule() throws Exception {
+    doThrow(new EntityNotFoundException(JobSchedule.class, "nope"))
+        .when(jobScheduler)
+        .setPaused("nope", true);
+
+    MvcResult response =
+        mockMvc
+            .perform(put("/api/jobs/schedules/pause?name=nope").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobSchedule with id nope not found", json.get("message"));
+  }
+}
@@ -2,8 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -12,42 +15,94 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobStatus;
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.JobArtifact;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusCount;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.FairShareDispatcher;
+import edu.ucsb.cs156.example.services.jobs.JobArtifactStore;
+import edu.ucsb.cs156.example.services.jobs.JobEventPublisher;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobLogIndexer;
+import edu.ucsb.cs156.example.services.jobs.JobMetricsRecorder;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.Invocation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  FairShareDispatcher.class,
+  JobEventPublisher.class,
+  JobMetricsRecorder.class,
+  JobLogCompressor.class,
+  JobLogIndexer.class,
+  JobExecutorConfig.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogLinesRepository jobLogLinesRepository;
+
+  @MockitoBean JobLogArchivesRepository jobLogArchivesRepository;
+
+  @MockitoBean JobLogTokensRepository jobLogTokensRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean JobArtifactStore jobArtifactStore;
+
+  @TempDir Path tempDir;
+
   @Autowired JobService jobService;
 
+  @Autowired JobEventPublisher jobEventPublisher;
+
   @Autowired ObjectMapper objectMapper;
 
   @WithMockUser(roles = {"ADMIN"})
@@ -82,7 +137,8 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    Job job = Job.builder().id(1L).status("completed").log("This is a test job log.").build();
+    Job job =
+        Job.builder().id(1L).status(JobStatus.COMPLETE).log("This is a test job log.").build();
 
     when(jobsRepository.findById(eq(1L))).thenReturn(Optional.of(job));
 
@@ -125,7 +181,7 @@ public class JobsControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    when(jobsRepository.deleteAllJobs()).thenReturn(3);
 
     // act
     MvcResult response =
@@ -136,7 +192,12 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
+    verify(jobsRepository, times(1)).deleteAllJobs();
+    verify(jobsRepository, never()).deleteAll();
+    verify(jobLogLinesRepository, times(1)).deleteAllLines();
+    verify(jobLogArchivesRepository, times(1)).deleteAllArchives();
+    verify(jobLogTokensRepository, times(1)).deleteAllTokens();
+    verify(jobArtifactStore, times(1)).deleteAll();
     String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -159,6 +220,115 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(jobLog));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_can_get_log_from_log_lines() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(3L).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findMessagesByJobId(3L)).thenReturn(List.of("line 1", "line 2"));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("line 1\nline 2"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_sends_archived_log_as_stored_to_gzip_clients() throws Exception {
+    // Arrange
+    byte[] compressed = JobLogCompressor.gzip("line 1\nline 2".getBytes());
+    when(jobLogArchivesRepository.findById(8L))
+        .thenReturn(
+            Optional.of(JobLogArchive.builder().jobId(8L).lineCount(2).data(compressed).build()));
+
+    // Act & Assert
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", 8L).header("Accept-Encoding", "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andReturn();
+    assertArrayEquals(compressed, response.getResponse().getContentAsByteArray());
+    verify(jobsRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_decompresses_archived_log_for_other_clients() throws Exception {
+    // Arrange
+    when(jobsRepository.findById(8L)).thenReturn(Optional.of(Job.builder().id(8L).build()));
+    when(jobLogArchivesRepository.findById(8L))
+        .thenReturn(
+            Optional.of(
+                JobLogArchive.builder()
+                    .jobId(8L)
+                    .data(JobLogCompressor.gzip("line 1\nline 2".getBytes()))
+                    .build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", 8L))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("line 1\nline 2"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_decompresses_archived_log_for_clients_refusing_gzip()
+      throws Exception {
+    // Arrange
+    when(jobsRepository.findById(8L)).thenReturn(Optional.of(Job.builder().id(8L).build()));
+    when(jobLogArchivesRepository.findById(8L))
+        .thenReturn(
+            Optional.of(
+                JobLogArchive.builder()
+                    .jobId(8L)
+                    .data(JobLogCompressor.gzip("line 1\nline 2".getBytes()))
+                    .build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", 8L).header("Accept-Encoding", "gzip;q=0, deflate"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("line 1\nline 2"));
+  }
+
+  @Test
+  public void test_acceptsGzip_honours_quality_values() {
+    assertTrue(JobsController.acceptsGzip("gzip"));
+    assertTrue(JobsController.acceptsGzip("deflate, GZIP ;q=0.5"));
+    assertTrue(JobsController.acceptsGzip("br;q=1.0, gzip; q=0.001"));
+    assertFalse(JobsController.acceptsGzip(null));
+    assertFalse(JobsController.acceptsGzip("deflate, br"));
+    assertFalse(JobsController.acceptsGzip("x-gzipped"));
+    assertFalse(JobsController.acceptsGzip("gzip;q=0"));
+    assertFalse(JobsController.acceptsGzip("gzip;q=0.000, deflate"));
+    assertFalse(JobsController.acceptsGzip("gzip;q=high"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_sends_unarchived_log_uncompressed_to_gzip_clients()
+      throws Exception {
+    // Arrange
+    when(jobsRepository.findById(3L)).thenReturn(Optional.of(Job.builder().id(3L).build()));
+    when(jobLogLinesRepository.findMessagesByJobId(3L)).thenReturn(List.of("line 1"));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", 3L).header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("line 1"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void test_getJobLogs_admin_can_get_empty_log() throws Exception {
@@ -175,6 +345,97 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(""));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_tail_job_log_from_offset() throws Exception {
+    // Arrange
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of(JobStatus.RUNNING));
+    when(jobLogLinesRepository.findMessagesByJobIdFromSeq(eq(5L), eq(2L), any()))
+        .thenReturn(List.of("line 2", "line 3"));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/tail", 5L).param("offset", "2"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // Assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(List.of("line 2", "line 3"), json.get("lines"));
+    assertEquals(2, json.get("offset"));
+    assertEquals(4, json.get("nextOffset"));
+    assertEquals("running", json.get("status"));
+    assertEquals(true, json.get("running"));
+    verify(jobsRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void tail_of_missing_job_returns_not_found() throws Exception {
+    // Arrange
+    when(jobsRepository.findStatusById(6L)).thenReturn(Optional.empty());
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/tail", 6L))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // Assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 6 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_events_of_specific_jobs() throws Exception {
+    // Arrange
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of(JobStatus.RUNNING));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/stream").param("ids", "8", "9"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    jobEventPublisher.publishLine(8L, 0L, "watched line");
+    jobEventPublisher.publishLine(10L, 0L, "unwatched line");
+    jobEventPublisher.publishStatus(9L, JobStatus.COMPLETE);
+
+    // Assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "event:status\ndata:{\"jobId\":8,\"status\":\"running\"}\n\n"
+                        + "event:log\ndata:{\"jobId\":8,\"seq\":0,"
+                        + "\"message\":\"watched line\"}\n\n"
+                        + "event:status\ndata:{\"jobId\":9,\"status\":\"complete\"}\n\n",
+                    response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_events_of_all_jobs() throws Exception {
+    // Act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stream")).andExpect(request().asyncStarted()).andReturn();
+    jobEventPublisher.publishLine(11L, 3L, "any job");
+
+    // Assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "event:log\ndata:{\"jobId\":11,\"seq\":3,\"message\":\"any job\"}\n\n",
+                    response.getResponse().getContentAsString()));
+    verify(jobsRepository, never()).findStatusById(anyLong());
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_specific_job() throws Exception {
@@ -194,6 +455,10 @@ public class JobsControllerTests extends ControllerTestCase {
     // assert
 
     verify(jobsRepository, times(1)).deleteById(eq(1L));
+    verify(jobLogLinesRepository, times(1)).deleteByJobId(eq(1L));
+    verify(jobLogArchivesRepository, times(1)).deleteByJobIdIn(eq(List.of(1L)));
+    verify(jobLogTokensRepository, times(1)).deleteByJobIdIn(eq(List.of(1L)));
+    verify(jobArtifactStore, times(1)).delete(eq(List.of(1L)));
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -217,6 +482,7 @@ public class JobsControllerTests extends ControllerTestCase {
     // assert
 
     verify(jobsRepository, times(1)).existsById(eq(2L));
+    verify(jobLogLinesRepository, never()).deleteByJobId(anyLong());
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 2 not found"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -236,8 +502,7 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdBy(user)
             .createdAt(null)
             .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
+            .status(JobStatus.RUNNING)
             .build();
 
     Job jobCompleted =
@@ -246,8 +511,7 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdBy(user)
             .createdAt(null)
             .updatedAt(null)
-            .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
+            .status(JobStatus.COMPLETE)
             .build();
 
     when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
@@ -263,14 +527,24 @@ public class JobsControllerTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
-    assertEquals("running", jobReturned.getStatus());
+    assertEquals(JobStatus.RUNNING, jobReturned.getStatus());
 
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(3, SECONDS)
+        .untilAsserted(
+            () ->
+                assertTrue(
+                    savedLogLines().stream()
+                        .anyMatch(line -> line.getMessage().equals("Hello World! from test job!"))));
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobCompleted)));
+
+    List<JobLogLine> lines = savedLogLines();
+    assertEquals(
+        List.of("Hello World! from test job!", "Goodbye from test job!"),
+        lines.stream().map(JobLogLine::getMessage).toList());
+    assertEquals(List.of(0L, 1L), lines.stream().map(JobLogLine::getSeq).toList());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -287,8 +561,7 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdBy(user)
             .createdAt(null)
             .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
+            .status(JobStatus.RUNNING)
             .build();
 
     Job jobFailed =
@@ -297,8 +570,7 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdBy(user)
             .createdAt(null)
             .updatedAt(null)
-            .status("error")
-            .log("Hello World! from test job!\nFail!")
+            .status(JobStatus.ERROR)
             .build();
 
     when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
@@ -313,15 +585,561 @@ public class JobsControllerTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
-    assertEquals("running", jobReturned.getStatus());
+    assertEquals(JobStatus.RUNNING, jobReturned.getStatus());
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobFailed)));
+
+    assertEquals(
+        List.of("Hello World! from test job!", "Fail!"),
+        savedLogLines().stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launch_with_idempotency_key_used_for_another_job_is_a_conflict() throws Exception {
+
+    // arrange
+
+    Job other = Job.builder().id(12L).status(JobStatus.RUNNING).requestHash("other").build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(eq(1L), eq("k")))
+        .thenReturn(Optional.of(other));
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0")
+                    .header("Idempotency-Key", "k")
+                    .with(csrf()))
+            .andExpect(status().isConflict())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("IdempotencyKeyConflictException", json.get("type"));
+    assertEquals(12, json.get("jobId"));
+    verify(jobsRepository, never()).save(any(Job.class));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_search_job_logs() throws Exception {
+    mockMvc.perform(get("/api/jobs/search?q=error")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_search_job_logs() throws Exception {
+
+    // arrange
+
+    when(jobLogTokensRepository.findLinesContainingAll(
+            eq(Set.of("disk", "full")), eq(2L), any(), any(), eq(PageRequest.of(0, 1000))))
+        .thenReturn(
+            List.of(new JobLogMatch(9L, 3L), new JobLogMatch(9L, 7L), new JobLogMatch(4L, 0L)));
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/search?q=Disk full!"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    assertEquals(
+        "[{\"jobId\":9,\"lines\":[3,7]},{\"jobId\":4,\"lines\":[0]}]",
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void search_without_words_is_a_bad_request() throws Exception {
+    mockMvc.perform(get("/api/jobs/search?q= ... ")).andExpect(status().isBadRequest());
+    verifyNoInteractions(jobLogTokensRepository);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_launch_test_pipeline() throws Exception {
+    mockMvc
+        .perform(post("/api/jobs/launch/testpipeline?fail=false&sleepMs=0").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_test_pipeline() throws Exception {
+
+    // arrange
+
+    AtomicLong nextId = new AtomicLong(1);
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              if (job.getId() == 0) {
+                job.setId(nextId.getAndIncrement());
+              }
+              return job;
+            });
+    when(jobsRepository.startPending(any(Long.class))).thenReturn(1);
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testpipeline?fail=false&sleepMs=100").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(1L, jobReturned.getId());
+    assertEquals(JobStatus.RUNNING, jobReturned.getStatus());
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertTrue(
+                    savedLogLines().stream()
+                        .anyMatch(line -> line.getMessage().equals("Pipeline complete"))));
+
+    List<String> pipelineLog =
+        savedLogLines().stream()
+            .filter(line -> line.getJobId() == 1L)
+            .map(JobLogLine::getMessage)
+            .toList();
+    assertEquals(9, pipelineLog.size());
+    assertEquals(
+        List.of("Step start started (job 2)", "Step start complete (job 2)"),
+        pipelineLog.subList(0, 2));
+    assertEquals(
+        List.of("Step join started (job 5)", "Step join complete (job 5)", "Pipeline complete"),
+        pipelineLog.subList(6, 9));
+    // the two middle steps ran side by side, so both started before either finished
+    assertEquals(
+        Set.of("Step left started (job 3)", "Step right started (job 4)"),
+        Set.copyOf(pipelineLog.subList(2, 4)));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_cancel_jobs() throws Exception {
+    mockMvc.perform(post("/api/jobs/cancel?id=1").with(csrf())).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_pending_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(eq(1L))).thenReturn(Optional.of(JobStatus.PENDING));
+    when(jobsRepository.cancelPending(eq(1L))).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=1").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    String expectedJson = mapper.writeValueAsString(Map.of("message", "Job 1 cancelled"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_404_when_cancelling_non_existing_job() throws Exception {
+    when(jobsRepository.findStatusById(eq(2L))).thenReturn(Optional.empty());
+
+    mockMvc.perform(post("/api/jobs/cancel?id=2").with(csrf())).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_running_test_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(eq(0L))).thenReturn(Optional.of(JobStatus.RUNNING));
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=60000").with(csrf()))
+        .andExpect(status().isOk());
+    await().atMost(10, SECONDS).until(() -> jobService.runningJobIds().contains(0L));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
 
+    // assert
+
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "Cancellation of job 0 requested"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    List.of("Hello World! from test job!", "Job cancelled"),
+                    savedLogLines().stream().map(JobLogLine::getMessage).toList()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_get_paged_jobs() throws Exception {
+    mockMvc.perform(get("/api/jobs/paged")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_artifacts_of_a_job() throws Exception {
+    List<JobArtifact> artifacts =
+        List.of(JobArtifact.builder().jobId(5L).name("export.csv").size(10).build());
+    when(jobArtifactStore.list(5L)).thenReturn(artifacts);
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/artifacts?id=5")).andExpect(status().isOk()).andReturn();
+
+    assertEquals(
+        mapper.writeValueAsString(artifacts), response.getResponse().getContentAsString());
+  }
+
+  private Path artifactFile() throws Exception {
+    Path file = Files.writeString(tempDir.resolve("export.csv"), "0123456789");
+    when(jobArtifactStore.find(5L, "export.csv")).thenReturn(Optional.of(file));
+    return file;
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_an_artifact() throws Exception {
+    artifactFile();
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifact?id=5&name=export.csv"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Accept-Ranges", "bytes"))
+            .andExpect(header().string("Content-Length", "10"))
+            .andExpect(
+                header().string("Content-Disposition", "attachment; filename=\"export.csv\""))
+            .andReturn();
+
+    assertEquals("0123456789", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void artifact_download_serves_a_single_byte_range() throws Exception {
+    artifactFile();
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/artifact?id=5&name=export.csv").header("Range", "bytes=2-4"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Range", "bytes 2-4/10"))
+            .andExpect(header().string("Content-Length", "3"))
+            .andReturn();
+    assertEquals("234", response.getResponse().getContentAsString());
+
+    response =
+        mockMvc
+            .perform(get("/api/jobs/artifact?id=5&name=export.csv").header("Range", "bytes=-3"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Range", "bytes 7-9/10"))
+            .andReturn();
+    assertEquals("789", response.getResponse().getContentAsString());
+
+    mockMvc
+        .perform(get("/api/jobs/artifact?id=5&name=export.csv").header("Range", "bytes=10-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string("Content-Range", "bytes */10"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void artifact_download_hands_the_file_to_the_container_when_it_supports_sendfile()
+      throws Exception {
+    Path file = artifactFile();
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/jobs/artifact?id=5&name=export.csv")
+                    .header("Range", "bytes=2-")
+                    .requestAttr(JobsController.SENDFILE_SUPPORT_ATTR, true))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Length", "8"))
+            .andReturn();
+
+    assertEquals(0, response.getResponse().getContentAsByteArray().length);
+    assertEquals(
+        file.toAbsolutePath().toString(),
+        response.getRequest().getAttribute(JobsController.SENDFILE_FILENAME_ATTR));
+    assertEquals(2L, response.getRequest().getAttribute(JobsController.SENDFILE_START_ATTR));
+    assertEquals(10L, response.getRequest().getAttribute(JobsController.SENDFILE_END_ATTR));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void missing_artifact_is_not_found() throws Exception {
+    when(jobArtifactStore.find(5L, "export.csv")).thenReturn(Optional.empty());
+
+    mockMvc
+        .perform(get("/api/jobs/artifact?id=5&name=export.csv"))
+        .andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_progress() throws Exception {
+
+    // arrange
+
+    JobProgress progress =
+        JobProgress.builder()
+            .jobId(5L)
+            .status(JobStatus.RUNNING)
+            .done(40L)
+            .total(100L)
+            .itemsPerSecond(2.5)
+            .eta(ZonedDateTime.parse("2030-01-01T00:00:00Z"))
+            .build();
+    when(jobsRepository.findProgressById(eq(5L))).thenReturn(Optional.of(progress));
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/progress?id=5")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    assertEquals(
+        mapper.writeValueAsString(progress), response.getResponse().getContentAsString());
+    verify(jobsRepository, never()).findById(any());
+  }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void progress_of_missing_job_is_not_found() throws Exception {
+    when(jobsRepository.findProgressById(eq(5L))).thenReturn(Optional.empty());
+
+    mockMvc.perform(get("/api/jobs/progress?id=5")).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_paged_job_summaries() throws Exception {
+
+    // arrange
+
+    JobSummary summary =
+        JobSummary.builder()
+            .id(5L)
+            .status(JobStatus.COMPLETE)
+            .createdById(1L)
+            .logLength(12)
+            .build();
+    PageRequest pageRequest = PageRequest.of(1, 1, Sort.by(Sort.Direction.ASC, "createdAt"));
+    when(jobsRepository.findSummaries(eq(JobStatus.COMPLETE), any(), eq(null), eq(pageRequest)))
+        .thenReturn(new PageImpl<>(List.of(summary), pageRequest, 3));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/jobs/paged?status=complete&createdFrom=2025-01-01T00:00:00Z"
+                    + "&page=1&size=1&sort=createdAt,asc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(jobsRepository)
+        .findSummaries(
+            JobStatus.COMPLETE, ZonedDateTime.parse("2025-01-01T00:00:00Z"), null, pageRequest);
+    verify(jobsRepository, never()).findAll();
+    Map<String, Object> json = responseToJson(response);
+    String expectedContent = mapper.writeValueAsString(List.of(summary));
+    assertEquals(expectedContent, mapper.writeValueAsString(json.get("content")));
+    assertEquals(
+        Map.of("size", 1, "number", 1, "totalElements", 3, "totalPages", 3), json.get("page"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_default_to_newest_first() throws Exception {
+    PageRequest expected = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
+    when(jobsRepository.findSummaries(null, null, null, expected))
+        .thenReturn(new PageImpl<>(List.of(), expected, 0));
+
+    mockMvc.perform(get("/api/jobs/paged")).andExpect(status().isOk());
+
+    verify(jobsRepository).findSummaries(null, null, null, expected);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_cannot_be_sorted_by_log() throws Exception {
+    mockMvc.perform(get("/api/jobs/paged?sort=log")).andExpect(status().isBadRequest());
+
+    verify(jobsRepository, never()).findSummaries(any(), any(), any(), any());
+  }
+
+  @Test
+  public void logged_out_users_cannot_list_their_jobs() throws Exception {
+    mockMvc.perform(get("/api/jobs/mine")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_can_list_their_own_jobs_newest_first() throws Exception {
+
+    // arrange
+
+    JobSummary summary =
+        JobSummary.builder().id(5L).status(JobStatus.RUNNING).createdById(1L).build();
+    PageRequest expected = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
+    when(jobsRepository.findSummariesByCreatedById(1L, expected))
+        .thenReturn(new PageImpl<>(List.of(summary), expected, 1));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/mine")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(jobsRepository).findSummariesByCreatedById(1L, expected);
+    verify(jobsRepository, never()).findSummaries(any(), any(), any(), any());
+    Map<String, Object> json = responseToJson(response);
+    String expectedContent = mapper.writeValueAsString(List.of(summary));
+    assertEquals(expectedContent, mapper.writeValueAsString(json.get("content")));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_sort_their_jobs_by_log() throws Exception {
+    mockMvc.perform(get("/api/jobs/mine?sort=log")).andExpect(status().isBadRequest());
+
+    verify(jobsRepository, never()).findSummariesByCreatedById(anyLong(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void paged_jobs_cannot_be_filtered_by_an_unknown_status() throws Exception {
+    mockMvc.perform(get("/api/jobs/paged?status=done")).andExpect(status().isBadRequest());
+
+    verify(jobsRepository, never()).findSummaries(any(), any(), any(), any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_get_job_status_summary() throws Exception {
+    mockMvc.perform(get("/api/jobs/summary")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_status_summary() throws Exception {
+
+    // arrange
+
+    ZonedDateTime oldest = ZonedDateTime.parse("2025-01-01T00:00:00Z");
+    when(jobsRepository.countJobsByStatus())
+        .thenReturn(
+            List.of(
+                new JobStatusCount(JobStatus.RUNNING, 2, 4L, oldest),
+                new JobStatusCount(JobStatus.COMPLETE, 5, 1L, oldest.minusDays(1))));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/summary")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(
+        Map.of("pending", 0, "running", 2, "complete", 5, "error", 0, "cancelled", 0),
+        json.get("counts"));
+    assertEquals(7, json.get("total"));
+    assertEquals(4, json.get("oldestRunningJobId"));
+    assertEquals(
+        oldest.toInstant(),
+        ZonedDateTime.parse((String) json.get("oldestRunningCreatedAt")).toInstant());
+    verify(jobsRepository, never()).findAll();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_get_job_metrics() throws Exception {
+    mockMvc.perform(get("/api/jobs/metrics")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  @SuppressWarnings("unchecked")
+  public void admin_can_get_job_metrics_after_a_test_job_runs() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.countByStatus(eq(JobStatus.PENDING))).thenReturn(7L);
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=10").with(csrf()))
+        .andExpect(status().isOk());
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(
+            () ->
+                assertTrue(
+                    savedLogLines().stream()
+                        .anyMatch(l -> l.getMessage().equals("Goodbye from test job!"))));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/metrics")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(7, json.get("pending"));
+    assertEquals(0, json.get("queued"));
+    Map<String, Object> testJob =
+        (Map<String, Object>) ((Map<String, Object>) json.get("types")).get("TestJob");
+    Map<String, Integer> outcomes = (Map<String, Integer>) testJob.get("outcomes");
+    assertTrue(outcomes.get("complete") >= 1);
+    Map<String, Object> runTime = (Map<String, Object>) testJob.get("runTime");
+    assertTrue((Integer) runTime.get("count") >= 1);
+    assertTrue((Integer) runTime.get("maxMs") >= 10);
   }
 
+  /** All log lines written through the mock repository, whether one at a time or batched. */
+  @SuppressWarnings("unchecked")
+  private List<JobLogLine> savedLogLines() {
+    List<JobLogLine> lines = new ArrayList<>();
+    for (Invocation invocation : mockingDetails(jobLogLinesRepository).getInvocations()) {
+      String method = invocation.getMethod().getName();
+      if (method.equals("save")) {
+        lines.add(invocation.getArgument(0));
+      } else if (method.equals("saveAll")) {
+        ((Iterable<JobLogLine>) invocation.getArgument(0)).forEach(lines::add);
+      }
+    }
+    return lines;
+  }
 }
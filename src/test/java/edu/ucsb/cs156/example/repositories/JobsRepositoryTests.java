@@ -0,0 +1,521 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.config.JpaAuditingConfig;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusCount;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobLogIndexer;
+import edu.ucsb.cs156.example.services.wiremock.WiremockService;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/** Runs the native and bulk queries of JobsRepository against H2, with the Liquibase schema. */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({JpaAuditingConfig.class, JobLogIndexer.class})
+public class JobsRepositoryTests {
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Autowired private JobLogTokensRepository jobLogTokensRepository;
+
+  @Autowired private JobLogIndexer jobLogIndexer;
+
+  @Autowired private TestEntityManager entityManager;
+
+  @MockitoBean WiremockService mockWiremockService;
+
+  private Job save(Job job) {
+    Job saved = jobsRepository.save(job);
+    entityManager.flush();
+    return saved;
+  }
+
+  @Test
+  public void claims_oldest_pending_queued_job_and_renews_its_lease() {
+    // arrange
+    save(Job.builder().status(JobStatus.PENDING).build()); // in-memory job, not queued
+    Job first = save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    ZonedDateTime now = ZonedDateTime.now();
+
+    // act
+    Long claimedId = jobsRepository.findNextClaimableJobId(now).orElseThrow();
+    jobsRepository.claim(claimedId, "worker-1", now);
+    entityManager.clear();
+
+    // assert
+    assertEquals(first.getId(), claimedId);
+    Job claimed = jobsRepository.findById(claimedId).orElseThrow();
+    assertEquals(JobStatus.RUNNING, claimed.getStatus());
+    assertEquals("worker-1", claimed.getWorkerId());
+    assertEquals(1, claimed.getAttempts());
+
+    assertEquals(1, jobsRepository.heartbeat("worker-1", List.of(claimedId), now.plusSeconds(5)));
+    assertEquals(0, jobsRepository.heartbeat("worker-2", List.of(claimedId), now.plusSeconds(5)));
+  }
+
+  @Test
+  public void running_job_becomes_claimable_when_its_lease_expires() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    ZonedDateTime claimedAt = ZonedDateTime.now().minusMinutes(10);
+    jobsRepository.claim(job.getId(), "worker-1", claimedAt);
+    entityManager.clear();
+
+    // act and assert
+    assertTrue(jobsRepository.findNextClaimableJobId(claimedAt.minusMinutes(1)).isEmpty());
+    assertEquals(
+        job.getId(), jobsRepository.findNextClaimableJobId(claimedAt.plusMinutes(1)).orElseThrow());
+  }
+
+  @Test
+  public void running_jobs_without_recent_heartbeat_are_orphaned_until_abandoned() {
+    // arrange
+    ZonedDateTime now = ZonedDateTime.now();
+    Job silent = save(Job.builder().status(JobStatus.RUNNING).build());
+    Job alive = save(Job.builder().status(JobStatus.RUNNING).build());
+    Job fresh = save(Job.builder().status(JobStatus.RUNNING).build());
+    save(Job.builder().status(JobStatus.COMPLETE).build());
+    // the first heartbeat of a job run in memory records its node
+    assertEquals(
+        1, jobsRepository.heartbeat("worker-1", List.of(silent.getId()), now.minusMinutes(10)));
+    jobsRepository.heartbeat("worker-2", List.of(alive.getId()), now);
+    entityManager.clear();
+    ZonedDateTime leaseExpiredBefore = now.minusMinutes(1);
+
+    // act and assert
+    assertEquals("worker-1", jobsRepository.findById(silent.getId()).orElseThrow().getWorkerId());
+    assertEquals(
+        List.of(silent.getId()),
+        jobsRepository.findOrphanedJobIds(leaseExpiredBefore, PageRequest.of(0, 10)));
+    assertEquals(0, jobsRepository.abandon(fresh.getId(), JobStatus.ERROR, leaseExpiredBefore));
+    assertEquals(1, jobsRepository.abandon(silent.getId(), JobStatus.ERROR, leaseExpiredBefore));
+    assertEquals(0, jobsRepository.abandon(silent.getId(), JobStatus.ERROR, leaseExpiredBefore));
+    entityManager.clear();
+    Job abandoned = jobsRepository.findById(silent.getId()).orElseThrow();
+    assertEquals(JobStatus.ERROR, abandoned.getStatus());
+    assertNull(abandoned.getWorkerId());
+    assertTrue(
+        jobsRepository.findOrphanedJobIds(leaseExpiredBefore, PageRequest.of(0, 10)).isEmpty());
+  }
+
+  @Test
+  public void release_returns_job_to_queue() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    jobsRepository.claim(job.getId(), "worker-1", ZonedDateTime.now());
+
+    // act
+    assertEquals(0, jobsRepository.release(job.getId(), "worker-2"));
+    assertEquals(1, jobsRepository.release(job.getId(), "worker-1"));
+    entityManager.clear();
+
+    // assert
+    Job released = jobsRepository.findById(job.getId()).orElseThrow();
+    assertEquals(JobStatus.PENDING, released.getStatus());
+    assertNull(released.getWorkerId());
+    assertEquals(0, released.getAttempts());
+  }
+
+  @Test
+  public void only_pending_jobs_are_started() {
+    // arrange
+    Job pending = save(Job.builder().status(JobStatus.PENDING).build());
+    Job cancelled = save(Job.builder().status(JobStatus.PENDING).build());
+    jobsRepository.cancelPending(cancelled.getId());
+
+    // act
+    int started = jobsRepository.startPending(pending.getId());
+    int startedCancelled = jobsRepository.startPending(cancelled.getId());
+    entityManager.clear();
+
+    // assert
+    assertEquals(1, started);
+    assertEquals(0, startedCancelled);
+    assertEquals(JobStatus.RUNNING, jobsRepository.findStatusById(pending.getId()).orElseThrow());
+    assertEquals(
+        JobStatus.CANCELLED, jobsRepository.findStatusById(cancelled.getId()).orElseThrow());
+  }
+
+  @Test
+  public void cancel_requests_are_recorded_and_stop_jobs_being_claimed() {
+    // arrange
+    Job pending =
+        save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    Job running =
+        save(Job.builder().status(JobStatus.PENDING).jobType("t").jobParams("{}").build());
+    ZonedDateTime claimedAt = ZonedDateTime.now().minusMinutes(10);
+    jobsRepository.claim(running.getId(), "worker-1", claimedAt);
+
+    // act
+    assertEquals(0, jobsRepository.cancelPending(running.getId()));
+    assertEquals(1, jobsRepository.requestCancel(running.getId()));
+    assertEquals(0, jobsRepository.requestCancel(pending.getId()));
+    assertEquals(1, jobsRepository.cancelPending(pending.getId()));
+    entityManager.clear();
+
+    // assert
+    assertEquals(JobStatus.CANCELLED, jobsRepository.findStatusById(pending.getId()).orElseThrow());
+    assertEquals(
+        List.of(running.getId()),
+        jobsRepository.findCancelRequestedIds(List.of(running.getId())));
+    assertTrue(jobsRepository.findNextClaimableJobId(claimedAt.plusMinutes(1)).isEmpty());
+  }
+
+  private void setUpdatedAt(Job job, ZonedDateTime updatedAt) {
+    entityManager
+        .getEntityManager()
+        .createNativeQuery("UPDATE jobs SET updated_at = :updatedAt WHERE id = :id")
+        .setParameter("updatedAt", updatedAt)
+        .setParameter("id", job.getId())
+        .executeUpdate();
+  }
+
+  @Test
+  public void saving_a_job_sets_its_timestamps() {
+    Job job = save(Job.builder().status(JobStatus.RUNNING).build());
+
+    assertNotNull(job.getCreatedAt());
+    assertNotNull(job.getUpdatedAt());
+  }
+
+  @Test
+  public void finds_and_deletes_finished_jobs_older_than_cutoff_in_batches() {
+    // arrange
+    ZonedDateTime cutoff = ZonedDateTime.now().minusDays(30);
+    Job oldComplete = save(Job.builder().status(JobStatus.COMPLETE).build());
+    Job oldError = save(Job.builder().status(JobStatus.ERROR).build());
+    Job oldRunning = save(Job.builder().status(JobStatus.RUNNING).build());
+    Job newComplete = save(Job.builder().status(JobStatus.COMPLETE).build());
+    setUpdatedAt(oldComplete, cutoff.minusDays(1));
+    setUpdatedAt(oldError, cutoff.minusDays(2));
+    setUpdatedAt(oldRunning, cutoff.minusDays(3));
+    jobLogLinesRepository.save(
+        JobLogLine.builder().jobId(oldComplete.getId()).seq(0).message("done").build());
+    jobLogLinesRepository.save(
+        JobLogLine.builder().jobId(newComplete.getId()).seq(0).message("done").build());
+    entityManager.flush();
+
+    // act
+    List<JobStatus> finished = List.of(JobStatus.COMPLETE, JobStatus.ERROR);
+    List<Long> firstBatch =
+        jobsRepository.findIdsByStatusInAndUpdatedBefore(finished, cutoff, PageRequest.of(0, 1));
+    List<Long> all =
+        jobsRepository.findIdsByStatusInAndUpdatedBefore(finished, cutoff, PageRequest.of(0, 10));
+    int linesDeleted = jobLogLinesRepository.deleteByJobIdIn(all);
+    int jobsDeleted = jobsRepository.deleteByIds(all);
+    entityManager.clear();
+
+    // assert
+    assertEquals(List.of(oldComplete.getId()), firstBatch);
+    assertEquals(List.of(oldComplete.getId(), oldError.getId()), all);
+    assertEquals(1, linesDeleted);
+    assertEquals(2, jobsDeleted);
+    assertTrue(jobsRepository.existsById(oldRunning.getId()));
+    assertTrue(jobsRepository.existsById(newComplete.getId()));
+    assertEquals(List.of("done"), jobLogLinesRepository.findMessagesByJobId(newComplete.getId()));
+  }
+
+  @Test
+  public void count_jobs_by_status_counts_each_status_and_finds_the_oldest_job() {
+    // arrange
+    Job oldest = save(Job.builder().status(JobStatus.RUNNING).build());
+    save(Job.builder().status(JobStatus.COMPLETE).build());
+    save(Job.builder().status(JobStatus.RUNNING).build());
+    entityManager.clear();
+    ZonedDateTime oldestCreatedAt = jobsRepository.findById(oldest.getId()).get().getCreatedAt();
+
+    // act
+    List<JobStatusCount> counts = jobsRepository.countJobsByStatus();
+
+    // assert
+    assertEquals(2, counts.size());
+    JobStatusCount running =
+        counts.stream().filter(c -> c.getStatus() == JobStatus.RUNNING).findFirst().get();
+    assertEquals(2, running.getCount());
+    assertEquals(oldest.getId(), running.getOldestJobId());
+    assertEquals(oldestCreatedAt.toInstant(), running.getOldestCreatedAt().toInstant());
+    JobStatusCount complete =
+        counts.stream().filter(c -> c.getStatus() == JobStatus.COMPLETE).findFirst().get();
+    assertEquals(1, complete.getCount());
+  }
+
+  @Test
+  public void delete_all_jobs_removes_every_row() {
+    save(Job.builder().status(JobStatus.COMPLETE).build());
+    save(Job.builder().status(JobStatus.RUNNING).build());
+
+    assertEquals(2, jobsRepository.deleteAllJobs());
+    assertEquals(0, jobsRepository.count());
+  }
+
+  @Test
+  public void find_summaries_pages_filters_and_counts_log_lines_without_the_log() {
+    // arrange
+    User user = entityManager.persist(User.builder().email("a@ucsb.edu").build());
+    Job first =
+        save(Job.builder().status(JobStatus.COMPLETE).createdBy(user).log("legacy log").build());
+    Job second = save(Job.builder().status(JobStatus.ERROR).build());
+    Job third = save(Job.builder().status(JobStatus.COMPLETE).build());
+    for (long seq = 0; seq < 3; seq++) {
+      jobLogLinesRepository.save(
+          JobLogLine.builder().jobId(first.getId()).seq(seq).message("line").build());
+    }
+    entityManager.flush();
+    entityManager.clear();
+
+    // act
+    Page<JobSummary> all =
+        jobsRepository.findSummaries(
+            null, null, null, PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "id")));
+    Page<JobSummary> complete =
+        jobsRepository.findSummaries(
+            JobStatus.COMPLETE, null, null, PageRequest.of(0, 10, Sort.by("id")));
+    Page<JobSummary> tooEarly =
+        jobsRepository.findSummaries(
+            null, null, first.getCreatedAt().minusDays(1), PageRequest.of(0, 10));
+    Page<JobSummary> fromNow =
+        jobsRepository.findSummaries(
+            null, first.getCreatedAt().minusDays(1), null, PageRequest.of(0, 10));
+
+    // assert
+    assertEquals(3, all.getTotalElements());
+    assertEquals(List.of(third.getId(), second.getId()), all.map(JobSummary::getId).toList());
+    assertEquals(List.of(first.getId(), third.getId()), complete.map(JobSummary::getId).toList());
+    JobSummary summary = complete.getContent().get(0);
+    assertEquals(user.getId(), summary.getCreatedById());
+    assertEquals(3, summary.getLogLength());
+    assertNotNull(summary.getCreatedAt());
+    assertNull(complete.getContent().get(1).getCreatedById());
+    assertEquals(0, complete.getContent().get(1).getLogLength());
+    assertEquals(0, tooEarly.getTotalElements());
+    assertEquals(3, fromNow.getTotalElements());
+  }
+
+  @Test
+  public void find_summaries_by_created_by_id_returns_only_that_users_jobs() {
+    // arrange
+    User user = entityManager.persist(User.builder().email("a@ucsb.edu").build());
+    User other = entityManager.persist(User.builder().email("b@ucsb.edu").build());
+    Job first = save(Job.builder().status(JobStatus.COMPLETE).createdBy(user).build());
+    save(Job.builder().status(JobStatus.RUNNING).createdBy(other).build());
+    save(Job.builder().status(JobStatus.RUNNING).build());
+    Job second = save(Job.builder().status(JobStatus.RUNNING).createdBy(user).build());
+    Job third = save(Job.builder().status(JobStatus.ERROR).createdBy(user).build());
+    entityManager.clear();
+
+    // act
+    Page<JobSummary> page =
+        jobsRepository.findSummariesByCreatedById(
+            user.getId(), PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "id")));
+    Page<JobSummary> nextPage =
+        jobsRepository.findSummariesByCreatedById(
+            user.getId(), PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "id")));
+
+    // assert
+    assertEquals(3, page.getTotalElements());
+    assertEquals(List.of(third.getId(), second.getId()), page.map(JobSummary::getId).toList());
+    assertEquals(List.of(first.getId()), nextPage.map(JobSummary::getId).toList());
+    assertTrue(page.stream().allMatch(summary -> user.getId() == summary.getCreatedById()));
+    assertEquals(JobStatus.ERROR, page.getContent().get(0).getStatus());
+  }
+
+  @Test
+  public void archived_logs_round_trip_and_count_towards_log_length() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.COMPLETE).build());
+    byte[] data = JobLogCompressor.gzip("a\nb".getBytes());
+    jobLogArchivesRepository.save(
+        JobLogArchive.builder().jobId(job.getId()).lineCount(2).rawBytes(3).data(data).build());
+    entityManager.flush();
+    entityManager.clear();
+
+    // act
+    JobLogArchive archive = jobLogArchivesRepository.findById(job.getId()).orElseThrow();
+    JobSummary summary =
+        jobsRepository.findSummaries(null, null, null, PageRequest.of(0, 1)).getContent().get(0);
+    int deleted = jobLogArchivesRepository.deleteByJobIdIn(List.of(job.getId()));
+
+    // assert
+    assertEquals("a\nb", JobLogCompressor.gunzip(archive.getData()));
+    assertEquals(2, summary.getLogLength());
+    assertEquals(1, deleted);
+  }
+
+  @Test
+  public void idempotency_key_is_held_by_one_job_of_a_user_at_a_time() {
+    // arrange
+    User user = entityManager.persist(User.builder().email("a@ucsb.edu").build());
+    Job first =
+        save(Job.builder().status(JobStatus.COMPLETE).createdBy(user).idempotencyKey("k").build());
+
+    // act and assert
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () ->
+            save(
+                Job.builder()
+                    .status(JobStatus.RUNNING)
+                    .createdBy(user)
+                    .idempotencyKey("k")
+                    .build()));
+    entityManager.clear();
+
+    assertEquals(
+        first.getId(),
+        jobsRepository.findByCreatedByIdAndIdempotencyKey(user.getId(), "k").orElseThrow().getId());
+    assertEquals(0, jobsRepository.releaseIdempotencyKey(first.getId(), "other"));
+    assertEquals(1, jobsRepository.releaseIdempotencyKey(first.getId(), "k"));
+    Job second =
+        save(Job.builder().status(JobStatus.RUNNING).createdBy(user).idempotencyKey("k").build());
+    assertEquals(
+        second.getId(),
+        jobsRepository.findByCreatedByIdAndIdempotencyKey(user.getId(), "k").orElseThrow().getId());
+  }
+
+  @Test
+  public void two_users_can_hold_the_same_idempotency_key() {
+    // arrange
+    User user = entityManager.persist(User.builder().email("a@ucsb.edu").build());
+    User other = entityManager.persist(User.builder().email("b@ucsb.edu").build());
+
+    // act
+    Job usersJob =
+        save(Job.builder().status(JobStatus.RUNNING).createdBy(user).idempotencyKey("k").build());
+    Job othersJob =
+        save(Job.builder().status(JobStatus.RUNNING).createdBy(other).idempotencyKey("k").build());
+
+    // assert
+    assertEquals(
+        usersJob.getId(),
+        jobsRepository.findByCreatedByIdAndIdempotencyKey(user.getId(), "k").orElseThrow().getId());
+    assertEquals(
+        othersJob.getId(),
+        jobsRepository
+            .findByCreatedByIdAndIdempotencyKey(other.getId(), "k")
+            .orElseThrow()
+            .getId());
+  }
+
+  private JobLogLine line(Job job, long seq, String message) {
+    return JobLogLine.builder().jobId(job.getId()).seq(seq).message(message).build();
+  }
+
+  @Test
+  public void search_finds_lines_containing_every_word_newest_job_first() {
+    // arrange
+    Job older = save(Job.builder().status(JobStatus.ERROR).build());
+    Job newer = save(Job.builder().status(JobStatus.ERROR).build());
+    jobLogIndexer.index(
+        List.of(
+            line(older, 0, "Starting refresh"),
+            line(older, 1, "ERROR: disk full on /var"),
+            line(older, 2, "full disk? no, error elsewhere")));
+    jobLogIndexer.index(
+        List.of(line(newer, 0, "Disk is full"), line(newer, 1, "Error: Disk FULL")));
+    entityManager.flush();
+
+    // act
+    List<JobLogSearchResult> results = jobLogIndexer.search("error disk full", null, null, 100);
+
+    // assert
+    assertEquals(2, results.size());
+    assertEquals(newer.getId(), results.get(0).getJobId());
+    assertEquals(List.of(1L), results.get(0).getLines());
+    assertEquals(older.getId(), results.get(1).getJobId());
+    assertEquals(List.of(1L, 2L), results.get(1).getLines());
+    assertEquals(1, jobLogIndexer.search("error disk full", null, null, 1).size());
+  }
+
+  @Test
+  public void search_only_looks_at_jobs_created_in_the_given_range() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.ERROR).build());
+    jobLogIndexer.index(List.of(line(job, 0, "timeout talking to UCSB API")));
+    entityManager.flush();
+    ZonedDateTime createdAt = jobsRepository.findById(job.getId()).orElseThrow().getCreatedAt();
+
+    // act and assert
+    assertEquals(
+        1, jobLogIndexer.search("timeout", createdAt.minusDays(7), null, 100).size());
+    assertEquals(
+        0, jobLogIndexer.search("timeout", createdAt.plusSeconds(1), null, 100).size());
+    assertEquals(
+        0, jobLogIndexer.search("timeout", null, createdAt.minusSeconds(1), 100).size());
+
+    jobLogTokensRepository.deleteByJobIdIn(List.of(job.getId()));
+    assertEquals(0, jobLogIndexer.search("timeout", null, null, 100).size());
+  }
+
+  @Test
+  public void progress_is_updated_without_saving_the_job_and_listed_in_summaries() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.RUNNING).build());
+    ZonedDateTime eta = ZonedDateTime.parse("2030-01-01T00:00:00Z");
+
+    // act
+    jobsRepository.updateProgress(job.getId(), 40, 100, 2.5, eta);
+    job.setStatus(JobStatus.COMPLETE);
+    save(job); // a save with a stale copy of the job keeps the progress
+    entityManager.clear();
+
+    // assert
+    JobProgress progress = jobsRepository.findProgressById(job.getId()).orElseThrow();
+    assertEquals(JobStatus.COMPLETE, progress.getStatus());
+    assertEquals(40L, progress.getDone());
+    assertEquals(100L, progress.getTotal());
+    assertEquals(2.5, progress.getItemsPerSecond());
+    assertTrue(eta.isEqual(progress.getEta()));
+    JobSummary summary =
+        jobsRepository.findSummaries(null, null, null, PageRequest.of(0, 10)).getContent().get(0);
+    assertEquals(40L, summary.getProgressDone());
+    assertEquals(100L, summary.getProgressTotal());
+    assertTrue(jobsRepository.findProgressById(job.getId() + 1).isEmpty());
+  }
+
+  @Test
+  public void checkpoint_is_saved_without_saving_the_job() {
+    // arrange
+    Job job = save(Job.builder().status(JobStatus.RUNNING).build());
+    ZonedDateTime checkpointAt = ZonedDateTime.now().minusSeconds(1);
+
+    // act
+    jobsRepository.saveCheckpoint(job.getId(), "{\"lastId\":42}", checkpointAt);
+    save(job); // a save with a stale copy of the job keeps the checkpoint
+    entityManager.clear();
+
+    // assert
+    Job saved = jobsRepository.findById(job.getId()).orElseThrow();
+    assertEquals("{\"lastId\":42}", saved.getCheckpoint());
+    assertNotNull(saved.getCheckpointAt());
+  }
+}
@@ -1,21 +1,35 @@
 package edu.ucsb.cs156.example.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.models.JobLogTail;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
 
 public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchivesRepository jobLogArchivesRepository;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -38,6 +52,22 @@ public class JobLogsServiceTests {
     assertEquals("This is a job log", result);
   }
 
+  @Test
+  void test_getJobLogs_joins_log_lines_in_order() {
+    // Arrange
+    Long jobId = 4L;
+    Job job = Job.builder().build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findMessagesByJobId(jobId))
+        .thenReturn(List.of("first line", "second line"));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("first line\nsecond line", result);
+  }
+
   @Test
   void test_getJobLogs_with_null_log() {
     // Arrange
@@ -62,4 +92,99 @@ public class JobLogsServiceTests {
     // Act & Assert
     assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
   }
+
+  @Test
+  void test_tailJobLogs_returns_new_lines_and_next_offset() {
+    // Arrange
+    when(jobRepository.findStatusById(5L)).thenReturn(Optional.of(JobStatus.COMPLETE));
+    when(jobLogLinesRepository.findMessagesByJobIdFromSeq(5L, 3L, PageRequest.of(0, 2)))
+        .thenReturn(List.of("d", "e"));
+
+    // Act
+    JobLogTail tail = jobService.tailJobLogs(5L, 3L, 2);
+
+    // Assert
+    assertEquals(List.of("d", "e"), tail.getLines());
+    assertEquals(5L, tail.getNextOffset());
+    assertEquals(JobStatus.COMPLETE, tail.getStatus());
+    assertFalse(tail.getRunning());
+  }
+
+  @Test
+  void test_tailJobLogs_falls_back_to_log_stored_on_job() {
+    // Arrange
+    Job job = Job.builder().log("a\nb\nc").build();
+    when(jobRepository.findStatusById(6L)).thenReturn(Optional.of(JobStatus.COMPLETE));
+    when(jobRepository.findById(6L)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findMessagesByJobIdFromSeq(6L, 0L, PageRequest.of(0, 1)))
+        .thenReturn(List.of());
+
+    // Act
+    JobLogTail tail = jobService.tailJobLogs(6L, 0L, 0);
+
+    // Assert
+    assertEquals(List.of("a"), tail.getLines());
+    assertEquals(1L, tail.getNextOffset());
+  }
+
+  @Test
+  void test_tailJobLogs_with_no_lines_yet() {
+    // Arrange
+    when(jobRepository.findStatusById(7L)).thenReturn(Optional.of(JobStatus.RUNNING));
+    when(jobRepository.findById(7L)).thenReturn(Optional.of(Job.builder().build()));
+
+    // Act
+    JobLogTail tail = jobService.tailJobLogs(7L, 0L, 10);
+
+    // Assert
+    assertEquals(List.of(), tail.getLines());
+    assertEquals(0L, tail.getNextOffset());
+  }
+
+  @Test
+  void test_tailJobLogs_of_a_pending_job_keeps_the_client_polling() {
+    // Arrange
+    when(jobRepository.findStatusById(9L)).thenReturn(Optional.of(JobStatus.PENDING));
+    when(jobRepository.findById(9L)).thenReturn(Optional.of(Job.builder().build()));
+
+    // Act
+    JobLogTail tail = jobService.tailJobLogs(9L, 0L, 10);
+
+    // Assert
+    assertEquals(JobStatus.PENDING, tail.getStatus());
+    assertTrue(tail.getRunning());
+  }
+
+  private static Optional<JobLogArchive> archive(long jobId, String log) {
+    return Optional.of(
+        JobLogArchive.builder().jobId(jobId).data(JobLogCompressor.gzip(log.getBytes())).build());
+  }
+
+  @Test
+  void test_getJobLogs_decompresses_archived_log() {
+    // Arrange
+    when(jobRepository.findById(8L)).thenReturn(Optional.of(Job.builder().log("old").build()));
+    when(jobLogArchivesRepository.findById(8L)).thenReturn(archive(8L, "a\nb"));
+
+    // Act and Assert
+    assertEquals("a\nb", jobService.getJobLogs(8L));
+    assertEquals(Optional.empty(), jobService.getCompressedJobLogs(9L));
+  }
+
+  @Test
+  void test_tailJobLogs_reads_archived_log_from_offset() {
+    // Arrange
+    when(jobRepository.findStatusById(8L)).thenReturn(Optional.of(JobStatus.COMPLETE));
+    when(jobLogLinesRepository.findMessagesByJobIdFromSeq(8L, 1L, PageRequest.of(0, 2)))
+        .thenReturn(List.of());
+    when(jobLogArchivesRepository.findById(8L)).thenReturn(archive(8L, "a\nb\nc\nd"));
+
+    // Act
+    JobLogTail tail = jobService.tailJobLogs(8L, 1L, 2);
+
+    // Assert
+    assertEquals(List.of("b", "c"), tail.getLines());
+    assertEquals(3L, tail.getNextOffset());
+    verify(jobRepository, never()).findById(8L);
+  }
 }
@@ -0,0 +1,200 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class FairShareDispatcherTests {
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private FairShareDispatcher dispatcher;
+
+  private final JobContextConsumer jobFunction = ctx -> {};
+
+  private final AtomicLong nextJobId = new AtomicLong(1);
+
+  // jobs handed to the executor, and the futures that finish them, in the order they started
+  private final Map<Long, CompletableFuture<Job>> started = new LinkedHashMap<>();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(dispatcher, "concurrency", 2);
+    ReflectionTestUtils.setField(dispatcher, "queueCapacity", 100);
+    when(jobService.runJobAsync(any(Job.class), any()))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              CompletableFuture<Job> future = new CompletableFuture<>();
+              started.put(job.getId(), future);
+              return future;
+            });
+  }
+
+  private Job submit(long userId) {
+    Job job =
+        Job.builder()
+            .id(nextJobId.getAndIncrement())
+            .createdBy(User.builder().id(userId).build())
+            .status(JobStatus.RUNNING)
+            .build();
+    dispatcher.submit(job, jobFunction);
+    return job;
+  }
+
+  private void finish(Job job) {
+    started.get(job.getId()).complete(job);
+  }
+
+  @Test
+  void light_user_runs_before_the_rest_of_a_heavy_users_backlog() {
+    // Arrange
+    List<Job> heavy = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      heavy.add(submit(1L));
+    }
+    Job light = submit(2L);
+    assertEquals(List.of(1L, 2L), List.copyOf(started.keySet()));
+    assertEquals(4, dispatcher.queuedCount());
+    assertEquals(Map.of(1L, 3, 2L, 1), dispatcher.queuedByUser());
+
+    // Act
+    finish(heavy.get(0));
+
+    // Assert
+    assertEquals(List.of(1L, 2L, light.getId()), List.copyOf(started.keySet()));
+    finish(heavy.get(1));
+    finish(light);
+    assertEquals(
+        List.of(1L, 2L, light.getId(), 3L, 4L), List.copyOf(started.keySet()));
+  }
+
+  @Test
+  void users_take_turns_when_they_have_as_many_jobs_running() {
+    // Arrange
+    ReflectionTestUtils.setField(dispatcher, "concurrency", 1);
+    Job a1 = submit(1L);
+    Job a2 = submit(1L);
+    Job a3 = submit(1L);
+    Job b1 = submit(2L);
+    Job b2 = submit(2L);
+
+    // Act
+    finish(a1);
+    finish(a2);
+    finish(b1);
+    finish(a3);
+
+    // Assert
+    assertEquals(
+        List.of(a1.getId(), a2.getId(), b1.getId(), a3.getId(), b2.getId()),
+        List.copyOf(started.keySet()));
+  }
+
+  @Test
+  void no_user_runs_more_than_the_cap_even_when_workers_are_free() {
+    // Arrange
+    ReflectionTestUtils.setField(dispatcher, "concurrency", 4);
+    ReflectionTestUtils.setField(dispatcher, "maxRunningPerUser", 1);
+
+    // Act
+    Job a1 = submit(1L);
+    submit(1L);
+    Job b1 = submit(2L);
+
+    // Assert
+    assertEquals(List.of(a1.getId(), b1.getId()), List.copyOf(started.keySet()));
+    finish(a1);
+    assertEquals(3, started.size());
+  }
+
+  @Test
+  void future_completes_when_the_job_finishes() {
+    Job job = Job.builder().id(9L).status(JobStatus.RUNNING).build();
+    CompletableFuture<Job> done = dispatcher.submit(job, jobFunction);
+
+    assertEquals(false, done.isDone());
+    started.get(9L).complete(job);
+    assertEquals(job, done.join());
+  }
+
+  @Test
+  void removed_job_never_starts_and_its_future_completes() {
+    // Arrange
+    Job a1 = submit(1L);
+    submit(1L);
+    Job a3 =
+        Job.builder()
+            .id(nextJobId.getAndIncrement())
+            .createdBy(User.builder().id(1L).build())
+            .status(JobStatus.RUNNING)
+            .build();
+    CompletableFuture<Job> done = dispatcher.submit(a3, jobFunction);
+    Job b1 = submit(2L);
+    List<Job> cancelled = new ArrayList<>();
+
+    // Act
+    boolean removed = dispatcher.remove(b1.getId(), cancelled::add);
+
+    // Assert
+    assertTrue(removed);
+    assertEquals(List.of(b1), cancelled);
+    assertEquals(Map.of(1L, 1), dispatcher.queuedByUser());
+    assertFalse(dispatcher.remove(a1.getId(), cancelled::add));
+    assertTrue(dispatcher.remove(a3.getId(), cancelled::add));
+    assertEquals(a3, done.join());
+    assertEquals(0, dispatcher.queuedCount());
+    finish(a1);
+    assertEquals(2, started.size());
+  }
+
+  @Test
+  void submit_throws_when_queue_capacity_jobs_are_waiting() {
+    ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1);
+    submit(1L);
+    submit(1L);
+    submit(1L);
+
+    JobQueueFullException e = assertThrows(JobQueueFullException.class, () -> submit(2L));
+    assertEquals(1, e.getQueueDepth());
+  }
+
+  @Test
+  void job_turned_away_by_the_executor_waits_for_the_next_dispatch() {
+    // Arrange
+    when(jobService.runJobAsync(any(Job.class), any()))
+        .thenThrow(new TaskRejectedException("full"))
+        .thenReturn(new CompletableFuture<>());
+
+    // Act
+    submit(1L);
+
+    // Assert
+    assertEquals(1, dispatcher.queuedCount());
+    dispatcher.dispatch();
+    assertEquals(0, dispatcher.queuedCount());
+    assertTrue(started.isEmpty());
+  }
+}
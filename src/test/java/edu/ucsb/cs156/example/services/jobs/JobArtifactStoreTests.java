@@ -0,0 +1,113 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.models.JobArtifact;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JobArtifactStoreTests {
+
+  @TempDir Path dir;
+
+  private JobArtifactStore store;
+
+  @BeforeEach
+  public void setup() {
+    store = new JobArtifactStore(dir.toString());
+  }
+
+  private void save(long jobId, String name, String content) throws Exception {
+    store.save(jobId, name, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void saved_artifacts_are_files_listed_by_name() throws Exception {
+    // Act
+    JobArtifact artifact =
+        store.save(5L, "export.csv", out -> out.write("a,b\n".getBytes(StandardCharsets.UTF_8)));
+    save(5L, "chart.png", "png");
+    save(6L, "other.txt", "other");
+
+    // Assert
+    assertEquals(5L, artifact.getJobId());
+    assertEquals("export.csv", artifact.getName());
+    assertEquals(4L, artifact.getSize());
+    Path file = store.find(5L, "export.csv").orElseThrow();
+    assertEquals(dir.resolve("5").resolve("export.csv"), file);
+    assertEquals("a,b\n", Files.readString(file));
+    assertEquals(
+        List.of("chart.png", "export.csv"),
+        store.list(5L).stream().map(JobArtifact::getName).toList());
+    assertEquals(List.of(), store.list(7L));
+    assertTrue(store.find(7L, "export.csv").isEmpty());
+  }
+
+  @Test
+  void saving_again_replaces_the_artifact() throws Exception {
+    save(5L, "export.csv", "old");
+    save(5L, "export.csv", "new!");
+
+    assertEquals("new!", Files.readString(store.find(5L, "export.csv").orElseThrow()));
+  }
+
+  @Test
+  void failed_write_saves_nothing() throws Exception {
+    // Arrange
+    save(5L, "export.csv", "old");
+
+    // Act
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                store.save(
+                    5L,
+                    "export.csv",
+                    out -> {
+                      out.write(1);
+                      throw new IOException("disk full");
+                    }));
+
+    // Assert
+    assertEquals("disk full", e.getMessage());
+    assertEquals("old", Files.readString(store.find(5L, "export.csv").orElseThrow()));
+    try (var files = Files.list(dir.resolve("5"))) {
+      assertEquals(1, files.count()); // no temporary file left behind
+    }
+  }
+
+  @Test
+  void names_that_could_escape_the_job_directory_are_rejected() {
+    for (String name : List.of("../6/export.csv", "a/b", ".hidden", "", "a b")) {
+      assertThrows(IllegalArgumentException.class, () -> save(5L, name, "x"), name);
+      assertTrue(store.find(5L, name).isEmpty(), name);
+    }
+  }
+
+  @Test
+  void delete_removes_the_artifacts_of_the_given_jobs() throws Exception {
+    // Arrange
+    save(5L, "export.csv", "5");
+    save(6L, "export.csv", "6");
+    save(7L, "export.csv", "7");
+
+    // Act and assert
+    store.delete(List.of(5L, 8L));
+    assertFalse(Files.exists(dir.resolve("5")));
+    assertTrue(store.find(6L, "export.csv").isPresent());
+
+    store.deleteAll();
+    assertTrue(store.list(6L).isEmpty());
+    assertTrue(store.list(7L).isEmpty());
+  }
+}
@@ -1,10 +1,48 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.errors.SubtasksFailedException;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 
+@SuppressWarnings("unchecked")
 public class JobContextTests {
   @Test
   public void when_jobs_repository_is_null_does_not_save() throws Exception {
@@ -21,4 +59,724 @@ public class JobContextTests {
     assertEquals("This is a log message", job1.getLog());
   }
 
+  @Test
+  public void log_appends_lines_without_rewriting_the_job() throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(job)
+            .build();
+
+    // act
+    ctx.log("first");
+    ctx.log("second");
+
+    // assert
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, times(2)).save(captor.capture());
+    List<JobLogLine> lines = captor.getAllValues();
+    assertEquals(List.of(7L, 7L), lines.stream().map(JobLogLine::getJobId).toList());
+    assertEquals(List.of(0L, 1L), lines.stream().map(JobLogLine::getSeq).toList());
+    assertEquals(List.of("first", "second"), lines.stream().map(JobLogLine::getMessage).toList());
+    assertNull(job.getLog());
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  public void multi_line_message_is_saved_as_one_row_per_line() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(7L).build())
+            .build();
+
+    // act
+    ctx.log("first\nsecond\n");
+    ctx.log("third");
+
+    // assert
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, times(4)).save(captor.capture());
+    List<JobLogLine> lines = captor.getAllValues();
+    assertEquals(List.of(0L, 1L, 2L, 3L), lines.stream().map(JobLogLine::getSeq).toList());
+    assertEquals(
+        List.of("first", "second", "", "third"),
+        lines.stream().map(JobLogLine::getMessage).toList());
+  }
+
+  @Test
+  public void buffered_context_writes_lines_in_batches_of_flush_lines() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(1L).build())
+            .flushLines(3)
+            .build();
+
+    // act
+    ctx.log("a");
+    ctx.log("b");
+    verifyNoInteractions(jobLogLinesRepository);
+    ctx.log("c");
+    ctx.log("d");
+
+    // assert
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, times(1)).saveAll(captor.capture());
+    assertEquals(List.of("a", "b", "c"), messages(captor.getValue()));
+
+    ctx.flush();
+    verify(jobLogLinesRepository, times(1)).save(any(JobLogLine.class));
+    ctx.flush();
+    verifyNoMoreInteractions(jobLogLinesRepository);
+  }
+
+  @Test
+  public void buffered_context_flushes_when_flush_bytes_reached() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(1L).build())
+            .flushLines(100)
+            .flushBytes(10)
+            .build();
+
+    // act
+    ctx.log("12345");
+    ctx.log(null);
+    verifyNoInteractions(jobLogLinesRepository);
+    ctx.log("67890");
+
+    // assert
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, times(1)).saveAll(captor.capture());
+    assertEquals(List.of(0L, 1L, 2L), seqs(captor.getValue()));
+  }
+
+  @Test
+  public void buffered_context_flushes_when_flush_interval_passed() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(1L).build())
+            .flushLines(100)
+            .flushIntervalMs(20)
+            .nanoClock(nanos::get)
+            .build();
+
+    // act
+    ctx.log("a");
+    nanos.addAndGet(19_000_000L);
+    ctx.flushIfDue();
+    verify(jobLogLinesRepository, never()).save(any(JobLogLine.class));
+    nanos.addAndGet(1_000_000L);
+    ctx.flushIfDue();
+
+    // assert
+    verify(jobLogLinesRepository, times(1)).save(any(JobLogLine.class));
+
+    ctx.log("b");
+    nanos.addAndGet(20_000_000L);
+    ctx.log("c");
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, times(1)).saveAll(captor.capture());
+    assertEquals(List.of("b", "c"), messages(captor.getValue()));
+  }
+
+  @Test
+  public void log_publishes_each_line_to_live_subscribers_before_it_is_written() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobEventPublisher jobEventPublisher = mock(JobEventPublisher.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .jobEventPublisher(jobEventPublisher)
+            .job(Job.builder().id(4L).build())
+            .flushLines(10)
+            .build();
+
+    // act
+    ctx.log("a");
+    ctx.log("b");
+
+    // assert
+    verify(jobEventPublisher).publishLine(4L, 0L, "a");
+    verify(jobEventPublisher).publishLine(4L, 1L, "b");
+    verifyNoInteractions(jobLogLinesRepository);
+  }
+
+  @Test
+  public void cancel_interrupts_the_runner_and_stops_further_logging() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx = JobContext.builder().jobLogLinesRepository(jobLogLinesRepository).job(job).build();
+    ctx.attach(Thread.currentThread(), 0);
+
+    // act
+    ctx.cancel("Job cancelled", false);
+    ctx.cancel("Job timed out", true);
+
+    // assert
+    assertTrue(Thread.interrupted());
+    assertTrue(ctx.isCancelled());
+    assertFalse(ctx.isTimedOut());
+    assertEquals("Job cancelled", ctx.getCancelReason());
+    JobCancelledException e = assertThrows(JobCancelledException.class, () -> ctx.log("more"));
+    assertEquals("Job cancelled", e.getMessage());
+    ctx.write("Job cancelled");
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository).save(captor.capture());
+    assertEquals("Job cancelled", captor.getValue().getMessage());
+  }
+
+  @Test
+  public void cancel_after_detach_does_not_interrupt_the_thread() throws Exception {
+
+    // arrange
+
+    JobContext ctx = JobContext.builder().job(Job.builder().id(5L).build()).build();
+    ctx.attach(Thread.currentThread(), 0);
+    ctx.detach();
+
+    // act
+    ctx.cancel("Job cancelled", false);
+
+    // assert
+    assertFalse(Thread.interrupted());
+    assertTrue(ctx.isCancelled());
+  }
+
+  @Test
+  public void is_past_deadline_only_when_a_timeout_is_set_and_has_passed() throws Exception {
+    AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    JobContext noTimeout =
+        JobContext.builder().job(Job.builder().build()).nanoClock(nanos::get).build();
+    JobContext longTimeout =
+        JobContext.builder().job(Job.builder().build()).nanoClock(nanos::get).build();
+    JobContext shortTimeout =
+        JobContext.builder().job(Job.builder().build()).nanoClock(nanos::get).build();
+
+    assertFalse(shortTimeout.isPastDeadline());
+    noTimeout.attach(Thread.currentThread(), 0);
+    longTimeout.attach(Thread.currentThread(), 600_000);
+    shortTimeout.attach(Thread.currentThread(), 1);
+    assertFalse(shortTimeout.isPastDeadline());
+    nanos.addAndGet(5_000_000L);
+
+    assertFalse(noTimeout.isPastDeadline());
+    assertFalse(longTimeout.isPastDeadline());
+    assertTrue(shortTimeout.isPastDeadline());
+  }
+
+  @Test
+  public void fork_runs_subtasks_in_parallel_up_to_the_limit_and_logs_into_the_job() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(5L).build())
+            .build();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    Map<String, JobContextConsumer> subtasks = new LinkedHashMap<>();
+    for (int i = 1; i <= 6; i++) {
+      subtasks.put(
+          "s" + i,
+          sub -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sub.log("start");
+            Thread.sleep(50);
+            sub.log("end");
+            running.decrementAndGet();
+          });
+    }
+
+    // act
+    ctx.fork(subtasks, 2);
+
+    // assert
+    assertEquals(2, maxRunning.get());
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, times(12)).save(captor.capture());
+    List<JobLogLine> lines = captor.getAllValues();
+    assertTrue(lines.stream().allMatch(line -> line.getJobId() == 5L));
+    assertEquals(
+        LongStream.range(0, 12).boxed().toList(), lines.stream().map(JobLogLine::getSeq).toList());
+    List<String> logged = messages(lines);
+    for (int i = 1; i <= 6; i++) {
+      assertTrue(logged.indexOf("[s%d] start".formatted(i)) < logged.indexOf("[s%d] end".formatted(i)));
+    }
+  }
+
+  @Test
+  public void fork_prefixes_lines_of_nested_subtasks_with_every_name() throws Exception {
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+
+    ctx.fork(Map.of("a", sub -> sub.fork(Map.of("b", nested -> nested.log("hi")), 1)), 1);
+
+    assertEquals("[a] [b] hi", job.getLog());
+  }
+
+  @Test
+  public void fork_waits_for_every_subtask_and_combines_their_failures() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+    List<String> finished = new CopyOnWriteArrayList<>();
+    Map<String, JobContextConsumer> subtasks = new LinkedHashMap<>();
+    subtasks.put(
+        "a",
+        sub -> {
+          throw new IllegalStateException("a broke");
+        });
+    subtasks.put(
+        "b",
+        sub -> {
+          Thread.sleep(50);
+          finished.add("b");
+        });
+    subtasks.put(
+        "c",
+        sub -> {
+          throw new Exception("c broke");
+        });
+
+    // act
+    SubtasksFailedException e =
+        assertThrows(SubtasksFailedException.class, () -> ctx.fork(subtasks, 3));
+
+    // assert
+    assertEquals("2 of 3 subtasks failed: a, c", e.getMessage());
+    assertEquals(List.of("a", "c"), List.copyOf(e.getFailures().keySet()));
+    assertEquals("a broke", e.getFailures().get("a").getMessage());
+    assertEquals(2, e.getSuppressed().length);
+    assertEquals(List.of("b"), finished);
+    assertEquals(
+        "Subtask a failed: a broke\nSubtask c failed: c broke", job.getLog());
+  }
+
+  @Test
+  public void cancel_interrupts_running_subtasks_and_skips_the_rest() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    AtomicInteger started = new AtomicInteger();
+    AtomicInteger interrupted = new AtomicInteger();
+    Map<String, JobContextConsumer> subtasks = new LinkedHashMap<>();
+    for (int i = 1; i <= 4; i++) {
+      subtasks.put(
+          "s" + i,
+          sub -> {
+            started.incrementAndGet();
+            try {
+              Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+              interrupted.incrementAndGet();
+              throw e;
+            }
+          });
+    }
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread runner =
+        new Thread(
+            () -> {
+              try {
+                ctx.fork(subtasks, 2);
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    ctx.attach(runner, 0);
+    runner.start();
+    await().until(() -> started.get() == 2);
+
+    // act
+    ctx.cancel("Job cancelled", false);
+    runner.join(10_000);
+
+    // assert
+    assertFalse(runner.isAlive());
+    assertTrue(thrown.get() instanceof JobCancelledException);
+    assertEquals(2, started.get());
+    assertEquals(2, interrupted.get());
+  }
+
+  @Test
+  public void progress_is_written_first_time_on_completion_and_then_at_most_once_per_interval()
+      throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    JobEventPublisher jobEventPublisher = mock(JobEventPublisher.class);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobEventPublisher(jobEventPublisher)
+            .job(job)
+            .progressIntervalMs(60_000)
+            .build();
+
+    // act and assert
+
+    ctx.progress(0, 10);
+    verify(jobsRepository).updateProgress(5L, 0L, 10L, null, null);
+    for (int done = 1; done < 10; done++) {
+      ctx.progress(done, 10);
+    }
+    ctx.flushIfDue();
+    verifyNoMoreInteractions(jobsRepository);
+    assertEquals(0L, job.getProgressDone());
+
+    Thread.sleep(5);
+    ctx.progress(10, 10);
+    ArgumentCaptor<Double> rate = ArgumentCaptor.forClass(Double.class);
+    ArgumentCaptor<ZonedDateTime> eta = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).updateProgress(eq(5L), eq(10L), eq(10L), rate.capture(), eta.capture());
+    assertTrue(rate.getValue() > 0);
+    assertFalse(eta.getValue().isAfter(ZonedDateTime.now()));
+    assertEquals(10L, job.getProgressDone());
+    assertEquals(rate.getValue(), job.getProgressRate());
+    verify(jobEventPublisher, times(2)).publishProgress(eq(5L), any());
+
+    ctx.progress(10, 10);
+    ctx.flushProgress();
+    verify(jobsRepository, times(2)).updateProgress(anyLong(), anyLong(), anyLong(), any(), any());
+  }
+
+  @Test
+  public void held_back_progress_is_written_once_the_interval_passes() throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .job(job)
+            .progressIntervalMs(20)
+            .nanoClock(nanos::get)
+            .build();
+    ctx.progress(0, 100);
+    nanos.addAndGet(10_000_000L);
+    ctx.progress(50, 100);
+
+    // act
+    nanos.addAndGet(20_000_000L);
+    ctx.flushIfDue();
+
+    // assert
+    ArgumentCaptor<ZonedDateTime> eta = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).updateProgress(eq(5L), eq(50L), eq(100L), any(), eta.capture());
+    assertTrue(job.getProgressRate() > 0);
+    assertTrue(eta.getValue().isAfter(ZonedDateTime.now()));
+  }
+
+  @Test
+  public void progress_of_a_cancelled_job_throws() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.cancel("Job cancelled", false);
+
+    assertThrows(JobCancelledException.class, () -> ctx.progress(1, 2));
+  }
+
+  @Test
+  public void subtasks_report_progress_of_the_whole_job() throws Exception {
+    Job job = Job.builder().build();
+    JobContext ctx = new JobContext(null, job);
+
+    ctx.fork(Map.of("a", sub -> sub.progress(3, 4)), 1);
+
+    assertEquals(3L, job.getProgressDone());
+    assertEquals(4L, job.getProgressTotal());
+  }
+
+  private static List<String> messages(Iterable<JobLogLine> lines) {
+    List<String> result = new ArrayList<>();
+    lines.forEach(line -> result.add(line.getMessage()));
+    return result;
+  }
+
+  private static List<Long> seqs(Iterable<JobLogLine> lines) {
+    List<Long> result = new ArrayList<>();
+    lines.forEach(line -> result.add(line.getSeq()));
+    return result;
+  }
+
+  @Test
+  public void checkpoint_writes_pending_lines_before_saving_the_state() throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx =
+        JobContext.builder()
+            .jobsRepository(jobsRepository)
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(job)
+            .flushLines(100)
+            .checkpoint("item 3")
+            .build();
+    assertEquals("item 3", ctx.getCheckpoint());
+
+    // act
+
+    ctx.log("item 4 done");
+    ctx.checkpoint("item 4");
+
+    // assert
+
+    InOrder inOrder = inOrder(jobLogLinesRepository, jobsRepository);
+    inOrder.verify(jobLogLinesRepository).save(any(JobLogLine.class));
+    inOrder.verify(jobsRepository).saveCheckpoint(eq(5L), eq("item 4"), any(ZonedDateTime.class));
+    assertEquals("item 4", ctx.getCheckpoint());
+    assertEquals("item 4", job.getCheckpoint());
+
+    ctx.checkpoint(null);
+    verify(jobsRepository).saveCheckpoint(5L, null, null);
+    assertNull(ctx.getCheckpoint());
+  }
+
+  @Test
+  public void checkpoint_rejects_state_larger_than_the_limit() throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx =
+        JobContext.builder().jobsRepository(jobsRepository).job(job).checkpointMaxBytes(4).build();
+
+    // act
+
+    ctx.checkpoint("1234");
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> ctx.checkpoint("12345"));
+
+    // assert
+
+    assertEquals("Checkpoint of job 5 is larger than 4 bytes", e.getMessage());
+    assertEquals("1234", ctx.getCheckpoint());
+  }
+
+  @Test
+  public void subtasks_checkpoint_the_whole_job() throws Exception {
+
+    // arrange
+
+    JobsRepository jobsRepository = mock(JobsRepository.class);
+    Job job = Job.builder().id(5L).build();
+    JobContext ctx = JobContext.builder().jobsRepository(jobsRepository).job(job).build();
+
+    // act
+
+    ctx.fork(Map.of("a", c -> c.checkpoint("a done")));
+
+    // assert
+
+    assertEquals("a done", ctx.getCheckpoint());
+    verify(jobsRepository).saveCheckpoint(eq(5L), eq("a done"), any());
+  }
+
+  private static List<String> savedMessages(JobLogLinesRepository jobLogLinesRepository) {
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, atLeast(0)).save(captor.capture());
+    return captor.getAllValues().stream().map(JobLogLine::getMessage).toList();
+  }
+
+  @Test
+  public void repeated_lines_are_collapsed_and_counted() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(5L).build())
+            .collapseRepeats(true)
+            .build();
+
+    // act
+
+    ctx.log("retrying");
+    ctx.log("retrying");
+    ctx.log("retrying");
+    ctx.log("connected");
+    ctx.log("connected");
+    ctx.summarizeSuppressed();
+
+    // assert
+
+    assertEquals(
+        List.of(
+            "retrying",
+            "(previous line repeated 2 more times)",
+            "connected",
+            "(previous line repeated 1 more time)"),
+        savedMessages(jobLogLinesRepository));
+  }
+
+  @Test
+  public void lines_over_the_rate_limit_are_suppressed_and_summarized() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(5L).build())
+            .maxLinesPerSecond(2)
+            .build();
+
+    // act
+
+    for (int i = 0; i < 1_002; i++) {
+      ctx.log("item " + i);
+    }
+    ctx.write("Job failed");
+
+    // assert
+
+    assertEquals(
+        List.of(
+            "item 0",
+            "item 1",
+            "Suppressed 1,000 lines: more than 2 lines per second",
+            "Job failed"),
+        savedMessages(jobLogLinesRepository));
+  }
+
+  @Test
+  public void log_stops_at_max_bytes_but_summaries_and_final_lines_are_written()
+      throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(5L).build())
+            .maxLogBytes(10)
+            .build();
+
+    // act
+
+    ctx.log("12345");
+    ctx.log("678901");
+    ctx.fork(Map.of("a", c -> c.log("more")));
+    ctx.write("Job complete");
+
+    // assert
+
+    assertEquals(
+        List.of(
+            "12345",
+            "Log limit of 10 bytes reached; later lines are suppressed",
+            "Suppressed 2 lines over the log limit",
+            "Job complete"),
+        savedMessages(jobLogLinesRepository));
+  }
+
+  @Test
+  public void max_bytes_counts_utf8_bytes_rather_than_characters() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .job(Job.builder().id(5L).build())
+            .maxLogBytes(10)
+            .build();
+
+    // act: each line is three characters but nine bytes
+
+    ctx.log("日本語");
+    ctx.log("日本語");
+
+    // assert
+
+    assertEquals(
+        List.of("日本語", "Log limit of 10 bytes reached; later lines are suppressed"),
+        savedMessages(jobLogLinesRepository));
+  }
+
+  @Test
+  public void write_artifact_saves_it_through_the_store_and_logs_it(@TempDir Path dir)
+      throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobArtifactStore store = new JobArtifactStore(dir.toString());
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(jobLogLinesRepository)
+            .jobArtifactStore(store)
+            .job(Job.builder().id(5L).build())
+            .build();
+
+    // act
+
+    ctx.fork(Map.of("a", c -> c.writeArtifact("a.txt", out -> out.write(new byte[1234]))));
+
+    // assert
+
+    assertEquals(1234L, Files.size(store.find(5L, "a.txt").orElseThrow()));
+    assertEquals(
+        List.of("[a] Saved artifact a.txt (1,234 bytes)"), savedMessages(jobLogLinesRepository));
+  }
+
+  @Test
+  public void write_artifact_without_a_store_throws() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().id(5L).build());
+
+    assertThrows(IllegalStateException.class, () -> ctx.writeArtifact("a.txt", out -> {}));
+  }
 }
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.models.JobEvent;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+public class JobEventPublisherTests {
+
+  private JobEventPublisher publisher;
+
+  @BeforeEach
+  public void setUp() {
+    publisher = new JobEventPublisher();
+    ReflectionTestUtils.setField(publisher, "queueCapacity", 10);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    publisher.shutdown();
+  }
+
+  @Test
+  public void subscriber_count_counts_each_subscription_once() {
+    publisher.subscribe(List.of(1L, 2L));
+    publisher.subscribe(List.of(2L));
+    publisher.subscribe(List.of());
+
+    assertEquals(3, publisher.subscriberCount());
+  }
+
+  @Test
+  public void events_are_sent_to_subscribers_of_the_job_and_of_all_jobs() throws Exception {
+    SseEmitter watching = mock(SseEmitter.class);
+    SseEmitter watchingAll = mock(SseEmitter.class);
+    SseEmitter watchingOther = mock(SseEmitter.class);
+    publisher.subscribe(List.of(1L), watching);
+    publisher.subscribe(List.of(), watchingAll);
+    publisher.subscribe(List.of(2L), watchingOther);
+
+    publisher.publishLine(1L, 0L, "first");
+    publisher.publishLine(1L, 1L, "second");
+
+    verify(watching, timeout(1000).times(2)).send(any(SseEventBuilder.class));
+    verify(watchingAll, timeout(1000).times(2)).send(any(SseEventBuilder.class));
+    verify(watchingOther, times(0)).send(any(SseEventBuilder.class));
+  }
+
+  @Test
+  public void send_failure_completes_emitter_with_error() throws Exception {
+    SseEmitter emitter = mock(SseEmitter.class);
+    IOException failure = new IOException("Broken pipe");
+    doThrow(failure).when(emitter).send(any(SseEventBuilder.class));
+    publisher.subscribe(List.of(1L), emitter);
+
+    publisher.send(
+        emitter,
+        JobEventPublisher.STATUS_EVENT,
+        JobEvent.builder().jobId(1L).status(JobStatus.RUNNING).build());
+
+    verify(emitter, timeout(1000)).completeWithError(failure);
+    assertEquals(0, publisher.subscriberCount());
+  }
+
+  @Test
+  public void a_blocked_subscriber_does_not_hold_up_a_logging_job() throws Exception {
+    // Arrange
+    CountDownLatch clientReads = new CountDownLatch(1);
+    SseEmitter stalled = mock(SseEmitter.class);
+    doAnswer(
+            inv -> {
+              clientReads.await();
+              return null;
+            })
+        .when(stalled)
+        .send(any(SseEventBuilder.class));
+    publisher.subscribe(List.of(1L), stalled);
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(mock(JobLogLinesRepository.class))
+            .jobEventPublisher(publisher)
+            .job(Job.builder().id(1L).status(JobStatus.RUNNING).build())
+            .flushLines(100)
+            .flushBytes(65536)
+            .flushIntervalMs(1000)
+            .build();
+
+    // Act
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(10),
+        () -> {
+          for (int i = 0; i < 1000; i++) {
+            ctx.log("line " + i);
+          }
+          ctx.flush();
+        });
+
+    // Assert
+    assertEquals(0, publisher.subscriberCount());
+    clientReads.countDown();
+    verify(stalled, timeout(1000)).complete();
+  }
+}
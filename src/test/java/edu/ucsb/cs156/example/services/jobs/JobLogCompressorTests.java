@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogCompressorTests {
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @InjectMocks private JobLogCompressor compressor;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(compressor, "compression", JobLogCompressor.GZIP);
+  }
+
+  @Test
+  void archive_replaces_log_lines_with_compressed_log() {
+    // Arrange
+    List<String> lines = Collections.nCopies(1000, "Processed item: ok");
+    when(jobLogLinesRepository.findMessagesByJobId(4L)).thenReturn(lines);
+
+    // Act
+    compressor.archive(4L);
+
+    // Assert
+    ArgumentCaptor<JobLogArchive> archive = ArgumentCaptor.forClass(JobLogArchive.class);
+    verify(jobLogArchivesRepository).save(archive.capture());
+    verify(jobLogLinesRepository).deleteByJobId(4L);
+    JobLogArchive saved = archive.getValue();
+    String log = String.join("\n", lines);
+    assertEquals(4L, saved.getJobId());
+    assertEquals(1000, saved.getLineCount());
+    assertEquals(log.length(), saved.getRawBytes());
+    assertEquals(log, JobLogCompressor.gunzip(saved.getData()));
+    assertTrue(saved.getData().length * 20 < log.length());
+  }
+
+  @Test
+  void archive_does_nothing_for_jobs_without_lines() {
+    when(jobLogLinesRepository.findMessagesByJobId(5L)).thenReturn(List.of());
+
+    compressor.archive(5L);
+
+    verifyNoInteractions(jobLogArchivesRepository);
+    verify(jobLogLinesRepository, never()).deleteByJobId(5L);
+  }
+
+  @Test
+  void archive_does_nothing_when_compression_is_off() {
+    ReflectionTestUtils.setField(compressor, "compression", "none");
+
+    compressor.archive(6L);
+
+    verifyNoInteractions(jobLogLinesRepository, jobLogArchivesRepository);
+  }
+
+  @Test
+  void gzip_round_trips_utf8() {
+    String text = "héllo\nwörld ✓";
+    assertEquals(text, JobLogCompressor.gunzip(JobLogCompressor.gzip(text.getBytes())));
+  }
+}
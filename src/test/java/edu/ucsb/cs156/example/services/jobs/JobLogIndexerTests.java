@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobLogToken;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JobLogIndexerTests {
+
+  @Mock private JobLogTokensRepository jobLogTokensRepository;
+
+  @InjectMocks private JobLogIndexer jobLogIndexer;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void tokens_are_distinct_lower_case_runs_of_letters_and_digits() {
+    assertEquals(
+        List.of("error", "http", "503", "from", "api", "ucsb", "edu", "année"),
+        List.copyOf(
+            JobLogIndexer.tokens("ERROR: HTTP 503 from api.ucsb.edu (error, année)")));
+    assertEquals(List.of(), List.copyOf(JobLogIndexer.tokens(" -- ")));
+    assertEquals(
+        JobLogIndexer.MAX_TOKEN_LENGTH, JobLogIndexer.tokens("x".repeat(100)).iterator().next().length());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void lines_are_indexed_as_the_job_context_writes_them() {
+    // Arrange
+    JobContext ctx =
+        JobContext.builder()
+            .jobLogLinesRepository(mock(JobLogLinesRepository.class))
+            .jobLogIndexer(jobLogIndexer)
+            .job(Job.builder().id(3L).build())
+            .firstSeq(5)
+            .build();
+
+    // Act
+    ctx.log("Hello hello world");
+
+    // Assert
+    ArgumentCaptor<List<JobLogToken>> tokens = ArgumentCaptor.forClass(List.class);
+    verify(jobLogTokensRepository).saveAll(tokens.capture());
+    assertEquals(
+        List.of(new JobLogToken("hello", 3L, 5L), new JobLogToken("world", 3L, 5L)),
+        tokens.getValue());
+  }
+
+  @Test
+  void failure_to_index_does_not_fail_the_caller() {
+    when(jobLogTokensRepository.saveAll(any())).thenThrow(new IllegalStateException("db down"));
+
+    jobLogIndexer.index(List.of(JobLogLine.builder().jobId(1L).seq(0).message("hi").build()));
+  }
+
+  @Test
+  void search_needs_at_least_one_word() {
+    assertThrows(IllegalArgumentException.class, () -> jobLogIndexer.search("!?", null, null, 10));
+    verifyNoInteractions(jobLogTokensRepository);
+  }
+}
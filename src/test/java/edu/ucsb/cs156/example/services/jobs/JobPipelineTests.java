@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JobPipelineTests {
+
+  private final JobContextConsumer noop = ctx -> {};
+
+  @Test
+  void build_keeps_steps_in_order_with_their_dependencies() {
+    JobPipeline pipeline =
+        JobPipeline.builder().step("a", noop).step("b", noop, "a").step("c", noop, "a", "b").build();
+
+    assertEquals(
+        List.of("a", "b", "c"), pipeline.getSteps().stream().map(JobPipeline.Step::name).toList());
+    assertEquals(List.of("a", "b"), pipeline.getSteps().get(2).dependsOn());
+  }
+
+  @Test
+  void step_rejects_duplicate_names() {
+    JobPipeline.Builder builder = JobPipeline.builder().step("a", noop);
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> builder.step("a", noop));
+    assertEquals("Duplicate pipeline step a", e.getMessage());
+  }
+
+  @Test
+  void step_rejects_dependencies_that_are_not_added_yet() {
+    // only depending on earlier steps is what rules out cycles
+    JobPipeline.Builder builder = JobPipeline.builder().step("a", noop);
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> builder.step("b", noop, "c"));
+    assertEquals("Pipeline step b depends on unknown step c", e.getMessage());
+  }
+
+  @Test
+  void build_rejects_empty_pipeline() {
+    assertThrows(IllegalArgumentException.class, () -> JobPipeline.builder().build());
+  }
+}
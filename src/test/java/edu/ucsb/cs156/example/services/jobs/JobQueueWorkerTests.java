@@ -0,0 +1,227 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class JobQueueWorkerTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobEventPublisher jobEventPublisher;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @InjectMocks private JobQueueWorker worker;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(worker, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(worker, "queueMode", JobService.DURABLE_QUEUE);
+    ReflectionTestUtils.setField(worker, "leaseMs", 60000L);
+    ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+    when(jobExecutor.getMaxPoolSize()).thenReturn(1);
+  }
+
+  private Job queuedJob(long id, int attempts, String jobType, String jobParams) {
+    return Job.builder()
+        .id(id)
+        .status(JobStatus.RUNNING)
+        .jobType(jobType)
+        .jobParams(jobParams)
+        .attempts(attempts)
+        .build();
+  }
+
+  @Test
+  void pollQueue_does_nothing_in_memory_mode() {
+    ReflectionTestUtils.setField(worker, "queueMode", "memory");
+
+    worker.pollQueue();
+
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void pollQueue_does_not_claim_when_no_worker_is_idle() {
+    when(jobExecutor.getActiveCount()).thenReturn(1);
+
+    worker.pollQueue();
+
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  void pollQueue_claims_and_runs_queued_job() {
+    // Arrange
+    Job job = queuedJob(5L, 1, TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":7}");
+    when(jobsRepository.findNextClaimableJobId(any(ZonedDateTime.class)))
+        .thenReturn(Optional.of(5L))
+        .thenReturn(Optional.empty());
+    when(jobsRepository.findById(5L)).thenReturn(Optional.of(job));
+
+    // Act
+    worker.pollQueue();
+
+    // Assert
+    verify(jobsRepository).claim(eq(5L), eq(worker.getWorkerId()), any(ZonedDateTime.class));
+    ArgumentCaptor<JobContextConsumer> jobFunction =
+        ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(jobService).runJobAsync(eq(job), jobFunction.capture());
+    TestJob testJob = (TestJob) jobFunction.getValue();
+    assertEquals(7, testJob.getSleepMs());
+    verify(jobEventPublisher).publishStatus(5L, JobStatus.RUNNING);
+    verify(jobsRepository, times(2)).findNextClaimableJobId(any(ZonedDateTime.class));
+  }
+
+  @Test
+  void pollQueue_returns_job_to_queue_when_executor_rejects_it() {
+    // Arrange
+    Job job = queuedJob(6L, 1, TestJob.class.getName(), "{}");
+    when(jobsRepository.findNextClaimableJobId(any(ZonedDateTime.class)))
+        .thenReturn(Optional.of(6L))
+        .thenReturn(Optional.empty());
+    when(jobsRepository.findById(6L)).thenReturn(Optional.of(job));
+    doThrow(new TaskRejectedException("full")).when(jobService).runJobAsync(eq(job), any());
+
+    // Act
+    worker.pollQueue();
+
+    // Assert
+    verify(jobsRepository).release(6L, worker.getWorkerId());
+  }
+
+  @Test
+  void pollQueue_abandons_job_after_max_attempts() {
+    // Arrange
+    Job job = queuedJob(7L, 4, TestJob.class.getName(), "{}");
+    when(jobsRepository.findNextClaimableJobId(any(ZonedDateTime.class)))
+        .thenReturn(Optional.of(7L))
+        .thenReturn(Optional.empty());
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findMaxSeqByJobId(7L)).thenReturn(Optional.of(2L));
+
+    // Act
+    worker.pollQueue();
+
+    // Assert
+    verify(jobService, never()).runJobAsync(any(), any());
+    assertEquals(JobStatus.ERROR, job.getStatus());
+    verify(jobsRepository).save(job);
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository).save(line.capture());
+    assertEquals("Job abandoned after 3 attempts", line.getValue().getMessage());
+    assertEquals(3L, line.getValue().getSeq());
+    verify(jobEventPublisher).publishStatus(7L, JobStatus.ERROR);
+  }
+
+  @Test
+  void pollQueue_fails_job_that_cannot_be_rebuilt() {
+    // Arrange
+    Job job = queuedJob(8L, 1, "no.such.Job", "{}");
+    when(jobsRepository.findNextClaimableJobId(any(ZonedDateTime.class)))
+        .thenReturn(Optional.of(8L))
+        .thenReturn(Optional.empty());
+    when(jobsRepository.findById(8L)).thenReturn(Optional.of(job));
+
+    // Act
+    worker.pollQueue();
+
+    // Assert
+    verify(jobService, never()).runJobAsync(any(), any());
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository).save(line.capture());
+    assertEquals("Cannot rebuild job no.such.Job: no.such.Job", line.getValue().getMessage());
+    assertEquals(0L, line.getValue().getSeq());
+  }
+
+  @Test
+  void heartbeat_renews_leases_of_running_jobs() {
+    when(jobService.ownedJobIds()).thenReturn(Set.of(1L, 2L));
+
+    worker.heartbeat();
+
+    verify(jobsRepository)
+        .heartbeat(eq(worker.getWorkerId()), eq(Set.of(1L, 2L)), any(ZonedDateTime.class));
+  }
+
+  @Test
+  void heartbeat_does_nothing_when_no_jobs_are_running() {
+    when(jobService.ownedJobIds()).thenReturn(Set.of());
+
+    worker.heartbeat();
+
+    verify(jobsRepository, never()).heartbeat(any(), any(), any());
+  }
+
+  @Test
+  void heartbeat_renews_leases_of_jobs_run_in_memory_too() {
+    ReflectionTestUtils.setField(worker, "queueMode", "memory");
+    when(jobService.ownedJobIds()).thenReturn(Set.of(3L));
+
+    worker.heartbeat();
+
+    verify(jobsRepository)
+        .heartbeat(eq(worker.getWorkerId()), eq(Set.of(3L)), any(ZonedDateTime.class));
+  }
+
+  @Test
+  void scheduled_heartbeats_carry_on_after_a_failure() {
+    // Arrange
+    ReflectionTestUtils.setField(worker, "heartbeatIntervalMs", 10L);
+    when(jobService.ownedJobIds())
+        .thenThrow(new IllegalStateException("database unavailable"))
+        .thenReturn(Set.of(1L));
+
+    // Act
+    worker.startHeartbeats();
+
+    // Assert
+    try {
+      verify(jobsRepository, timeout(1000).atLeast(2))
+          .heartbeat(eq(worker.getWorkerId()), eq(Set.of(1L)), any(ZonedDateTime.class));
+    } finally {
+      worker.stopHeartbeats();
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobReconcilerTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogIndexer jobLogIndexer;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Mock private JobEventPublisher jobEventPublisher;
+
+  @InjectMocks private JobReconciler reconciler;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(reconciler, "queueMode", JobService.DURABLE_QUEUE);
+    ReflectionTestUtils.setField(reconciler, "leaseMs", 60000L);
+    ReflectionTestUtils.setField(reconciler, "batchSize", 2);
+    when(jobLogLinesRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+    when(jobsRepository.abandon(anyLong(), any(), any())).thenReturn(1);
+  }
+
+  private void orphan(Job... jobs) {
+    when(jobsRepository.findOrphanedJobIds(any(), any()))
+        .thenReturn(List.of(jobs).stream().map(Job::getId).toList())
+        .thenReturn(List.of());
+    for (Job job : jobs) {
+      when(jobsRepository.findById(job.getId())).thenReturn(Optional.of(job));
+    }
+  }
+
+  private String loggedMessage(long jobId) {
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, times(1)).save(line.capture());
+    assertEquals(jobId, line.getValue().getJobId());
+    return line.getValue().getMessage();
+  }
+
+  @Test
+  void jobs_run_in_memory_are_marked_error() {
+    // Arrange
+    orphan(Job.builder().id(1L).status(JobStatus.RUNNING).workerId("worker-1").build());
+
+    // Act
+    int settled = reconciler.reconcile();
+
+    // Assert
+    assertEquals(1, settled);
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).findOrphanedJobIds(cutoff.capture(), eq(PageRequest.of(0, 2)));
+    verify(jobsRepository).abandon(1L, JobStatus.ERROR, cutoff.getValue());
+    assertEquals("Job failed: its node stopped sending heartbeats", loggedMessage(1L));
+    verify(jobEventPublisher).publishStatus(1L, JobStatus.ERROR);
+    verify(jobLogCompressor).archive(1L);
+  }
+
+  @Test
+  void queued_jobs_are_returned_to_the_queue() {
+    // Arrange
+    orphan(Job.builder().id(2L).status(JobStatus.RUNNING).jobType("t").jobParams("{}").build());
+
+    // Act
+    reconciler.reconcile();
+
+    // Assert
+    verify(jobsRepository).abandon(eq(2L), eq(JobStatus.PENDING), any());
+    assertEquals(
+        "Job returned to the queue: its node stopped sending heartbeats", loggedMessage(2L));
+    verify(jobEventPublisher).publishStatus(2L, JobStatus.PENDING);
+    verify(jobLogCompressor, never()).archive(anyLong());
+  }
+
+  @Test
+  void queued_jobs_are_marked_error_in_memory_mode() {
+    // Arrange
+    ReflectionTestUtils.setField(reconciler, "queueMode", "memory");
+    orphan(Job.builder().id(2L).status(JobStatus.RUNNING).jobType("t").jobParams("{}").build());
+
+    // Act
+    reconciler.reconcile();
+
+    // Assert
+    verify(jobsRepository).abandon(eq(2L), eq(JobStatus.ERROR), any());
+  }
+
+  @Test
+  void jobs_asked_to_stop_are_marked_cancelled() {
+    // Arrange
+    orphan(
+        Job.builder().id(3L).status(JobStatus.RUNNING).jobType("t").cancelRequested(true).build());
+
+    // Act
+    reconciler.reconcile();
+
+    // Assert
+    verify(jobsRepository).abandon(eq(3L), eq(JobStatus.CANCELLED), any());
+    assertEquals("Job cancelled: its node stopped sending heartbeats", loggedMessage(3L));
+  }
+
+  @Test
+  void jobs_settled_elsewhere_in_the_meantime_are_left_alone() {
+    // Arrange
+    orphan(Job.builder().id(4L).status(JobStatus.RUNNING).build());
+    when(jobsRepository.abandon(eq(4L), any(), any())).thenReturn(0);
+
+    // Act
+    int settled = reconciler.reconcile();
+
+    // Assert
+    assertEquals(0, settled);
+    verify(jobLogLinesRepository, never()).save(any());
+    verify(jobEventPublisher, never()).publishStatus(anyLong(), any());
+  }
+
+  @Test
+  void reconcile_works_through_batches_until_a_short_batch() {
+    // Arrange
+    when(jobsRepository.findOrphanedJobIds(any(), any()))
+        .thenReturn(List.of(1L, 2L))
+        .thenReturn(List.of(3L));
+    for (long id = 1; id <= 3; id++) {
+      when(jobsRepository.findById(id))
+          .thenReturn(Optional.of(Job.builder().id(id).status(JobStatus.RUNNING).build()));
+    }
+
+    // Act
+    int settled = reconciler.reconcile();
+
+    // Assert
+    assertEquals(3, settled);
+    verify(jobsRepository, times(2)).findOrphanedJobIds(any(), any());
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTokensRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class JobRetentionSweeperTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Mock private JobLogTokensRepository jobLogTokensRepository;
+
+  @Mock private JobArtifactStore jobArtifactStore;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @InjectMocks private JobRetentionSweeper sweeper;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(sweeper, "maxAgeDays", 30L);
+    ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+    ReflectionTestUtils.setField(sweeper, "maxBatches", 10);
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+  }
+
+  @Test
+  void sweep_deletes_batches_until_a_short_batch() {
+    // Arrange
+    when(jobsRepository.findIdsByStatusInAndUpdatedBefore(any(), any(), any()))
+        .thenReturn(List.of(1L, 2L))
+        .thenReturn(List.of(3L));
+    when(jobsRepository.deleteByIds(List.of(1L, 2L))).thenReturn(2);
+    when(jobsRepository.deleteByIds(List.of(3L))).thenReturn(1);
+
+    // Act
+    int deleted = sweeper.sweep();
+
+    // Assert
+    assertEquals(3, deleted);
+    verify(jobLogLinesRepository).deleteByJobIdIn(List.of(1L, 2L));
+    verify(jobLogLinesRepository).deleteByJobIdIn(List.of(3L));
+    verify(jobLogArchivesRepository).deleteByJobIdIn(List.of(1L, 2L));
+    verify(jobLogArchivesRepository).deleteByJobIdIn(List.of(3L));
+    verify(jobLogTokensRepository).deleteByJobIdIn(List.of(1L, 2L));
+    verify(jobLogTokensRepository).deleteByJobIdIn(List.of(3L));
+    verify(jobArtifactStore).delete(List.of(1L, 2L));
+    verify(jobArtifactStore).delete(List.of(3L));
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(2))
+        .findIdsByStatusInAndUpdatedBefore(
+            eq(JobRetentionSweeper.FINISHED_STATUSES), cutoff.capture(), eq(PageRequest.of(0, 2)));
+    assertEquals(
+        ZonedDateTime.now().minusDays(30).toLocalDate(), cutoff.getValue().toLocalDate());
+  }
+
+  @Test
+  void sweep_stops_after_max_batches() {
+    // Arrange
+    ReflectionTestUtils.setField(sweeper, "maxBatches", 3);
+    when(jobsRepository.findIdsByStatusInAndUpdatedBefore(any(), any(), any()))
+        .thenReturn(List.of(1L, 2L));
+    when(jobsRepository.deleteByIds(any())).thenReturn(2);
+
+    // Act and Assert
+    assertEquals(6, sweeper.sweep());
+    verify(jobsRepository, times(3)).deleteByIds(any());
+  }
+
+  @Test
+  void sweep_deletes_artifacts_only_after_the_jobs_are_deleted() {
+    // Arrange
+    when(jobsRepository.findIdsByStatusInAndUpdatedBefore(any(), any(), any()))
+        .thenReturn(List.of(1L));
+    when(jobsRepository.deleteByIds(List.of(1L))).thenReturn(1);
+    InOrder inOrder = inOrder(transactionTemplate, jobArtifactStore);
+
+    // Act
+    sweeper.sweep();
+
+    // Assert
+    inOrder.verify(transactionTemplate).execute(any());
+    inOrder.verify(jobArtifactStore).delete(List.of(1L));
+  }
+
+  @Test
+  void sweep_keeps_artifacts_when_the_batch_rolls_back() {
+    // Arrange
+    when(jobsRepository.findIdsByStatusInAndUpdatedBefore(any(), any(), any()))
+        .thenReturn(List.of(1L));
+    when(jobsRepository.deleteByIds(List.of(1L)))
+        .thenThrow(new DataIntegrityViolationException("still referenced"));
+
+    // Act
+    assertThrows(DataIntegrityViolationException.class, () -> sweeper.sweep());
+
+    // Assert
+    verifyNoInteractions(jobArtifactStore);
+  }
+
+  @Test
+  void sweep_does_nothing_when_nothing_has_expired() {
+    when(jobsRepository.findIdsByStatusInAndUpdatedBefore(any(), any(), any(Pageable.class)))
+        .thenReturn(List.of());
+
+    assertEquals(0, sweeper.sweep());
+    verify(jobsRepository, never()).deleteByIds(any());
+    verifyNoInteractions(jobLogLinesRepository, jobLogArchivesRepository, jobLogTokensRepository);
+  }
+
+  @Test
+  void sweep_is_disabled_when_max_age_is_zero() {
+    ReflectionTestUtils.setField(sweeper, "maxAgeDays", 0L);
+
+    assertEquals(0, sweeper.sweep());
+    verifyNoInteractions(jobsRepository, jobLogLinesRepository, transactionTemplate);
+  }
+}
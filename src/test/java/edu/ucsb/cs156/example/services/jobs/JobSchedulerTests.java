@@ -0,0 +1,263 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobScheduleInfo;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SuppressWarnings("unchecked")
+public class JobSchedulerTests {
+
+  @Mock private JobService jobService;
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobSchedulesRepository jobSchedulesRepository;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private TaskScheduler taskScheduler;
+
+  @Mock private ScheduledFuture<?> future;
+
+  @InjectMocks private JobScheduler scheduler;
+
+  private final JobContextConsumer jobFunction = ctx -> {};
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(scheduler, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(scheduler, "env", new MockEnvironment());
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+    doAnswer(
+            inv -> {
+              ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(taskScheduler.schedule(any(Runnable.class), any(CronTrigger.class)))
+        .thenAnswer(inv -> future);
+  }
+
+  private JobSchedule schedule(boolean paused, Long lastJobId, ZonedDateTime lastFiredAt) {
+    JobSchedule schedule =
+        JobSchedule.builder()
+            .name("refresh")
+            .paused(paused)
+            .lastJobId(lastJobId)
+            .lastFiredAt(lastFiredAt)
+            .build();
+    when(jobSchedulesRepository.findByNameForUpdate("refresh")).thenReturn(Optional.of(schedule));
+    when(jobSchedulesRepository.findById("refresh")).thenReturn(Optional.of(schedule));
+    return schedule;
+  }
+
+  @Test
+  void register_creates_state_row_and_schedules_cron_trigger() {
+    // Act
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+
+    // Assert
+    ArgumentCaptor<JobSchedule> saved = ArgumentCaptor.forClass(JobSchedule.class);
+    verify(jobSchedulesRepository).save(saved.capture());
+    assertEquals("refresh", saved.getValue().getName());
+    ArgumentCaptor<CronTrigger> trigger = ArgumentCaptor.forClass(CronTrigger.class);
+    verify(taskScheduler).schedule(any(Runnable.class), trigger.capture());
+    assertEquals("0 0 * * * *", trigger.getValue().getExpression());
+  }
+
+  @Test
+  void register_again_replaces_the_previous_trigger() {
+    when(jobSchedulesRepository.existsById("refresh")).thenReturn(true);
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+
+    scheduler.register("refresh", "0 30 * * * *", () -> jobFunction);
+
+    verify(future).cancel(false);
+    verify(jobSchedulesRepository, never()).save(any());
+  }
+
+  @Test
+  void register_rejects_invalid_cron() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> scheduler.register("refresh", "every hour", () -> jobFunction));
+  }
+
+  @Test
+  void fire_creates_and_starts_job_and_records_it() {
+    // Arrange
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+    JobSchedule schedule = schedule(false, null, null);
+    Job job = Job.builder().id(7L).status(JobStatus.PENDING).build();
+    when(jobService.createJob(jobFunction)).thenReturn(job);
+
+    // Act
+    String message = scheduler.fire("refresh", false);
+
+    // Assert
+    assertEquals("Job schedule refresh started job 7", message);
+    verify(jobService).startJob(job, jobFunction);
+    assertEquals(7L, schedule.getLastJobId());
+    assertTrue(schedule.getLastFiredAt() != null);
+    verify(jobSchedulesRepository).save(schedule);
+  }
+
+  @Test
+  void fire_leaves_durable_jobs_to_the_queue_worker() {
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+    schedule(false, null, null);
+    Job job =
+        Job.builder().id(8L).status(JobStatus.PENDING).jobType(TestJob.class.getName()).build();
+    when(jobService.createJob(jobFunction)).thenReturn(job);
+
+    assertEquals("Job schedule refresh started job 8", scheduler.fire("refresh", false));
+    verify(jobService, never()).startJob(any(), any());
+  }
+
+  @Test
+  void fire_skips_paused_schedule_unless_triggered_by_hand() {
+    // Arrange
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+    schedule(true, null, null);
+    when(jobService.createJob(jobFunction)).thenReturn(Job.builder().id(9L).build());
+
+    // Act and Assert
+    assertEquals("Job schedule refresh is paused", scheduler.fire("refresh", false));
+    verify(jobService, never()).createJob(any());
+    assertEquals("Job schedule refresh started job 9", scheduler.trigger("refresh"));
+  }
+
+  @Test
+  void fire_skips_cron_slot_another_node_already_ran() {
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+    ZonedDateTime lastFiredAt = ZonedDateTime.now().minusSeconds(1);
+    schedule(false, 3L, lastFiredAt);
+
+    assertEquals(
+        "Job schedule refresh already ran at " + lastFiredAt, scheduler.fire("refresh", false));
+    verify(jobService, never()).createJob(any());
+  }
+
+  @Test
+  void fire_skips_run_while_previous_run_is_still_going() {
+    // Arrange
+    scheduler.register("refresh", "* * * * * *", () -> jobFunction);
+    schedule(false, 3L, ZonedDateTime.now().minusMinutes(5));
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of(JobStatus.RUNNING));
+
+    // Act and Assert
+    assertEquals(
+        "Job schedule refresh skipped: job 3 is still running", scheduler.fire("refresh", false));
+    assertEquals(
+        "Job schedule refresh skipped: job 3 is still running", scheduler.trigger("refresh"));
+    verify(jobService, never()).createJob(any());
+  }
+
+  @Test
+  void unknown_schedules_are_not_found() {
+    assertThrows(EntityNotFoundException.class, () -> scheduler.trigger("nope"));
+    assertThrows(EntityNotFoundException.class, () -> scheduler.setPaused("nope", true));
+    verify(jobSchedulesRepository, never()).setPaused(any(), eq(true));
+  }
+
+  @Test
+  void setPaused_updates_shared_state() {
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+
+    scheduler.setPaused("refresh", true);
+
+    verify(jobSchedulesRepository).setPaused("refresh", true);
+  }
+
+  @Test
+  void listSchedules_reports_state_and_next_fire_time() {
+    // Arrange
+    scheduler.register("b-refresh", "0 0 * * * *", () -> jobFunction);
+    scheduler.register("refresh", "0 0 * * * *", () -> jobFunction);
+    ZonedDateTime lastFiredAt = ZonedDateTime.now().minusHours(1);
+    schedule(true, 3L, lastFiredAt);
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of(JobStatus.COMPLETE));
+
+    // Act
+    List<JobScheduleInfo> schedules = scheduler.listSchedules();
+
+    // Assert
+    assertEquals(List.of("b-refresh", "refresh"), schedules.stream().map(JobScheduleInfo::getName).toList());
+    JobScheduleInfo unfired = schedules.get(0);
+    assertNull(unfired.getLastJobId());
+    assertEquals(0, unfired.getNextFireAt().getMinute());
+    JobScheduleInfo refresh = schedules.get(1);
+    assertEquals("0 0 * * * *", refresh.getCron());
+    assertTrue(refresh.getPaused());
+    assertEquals(JobStatus.COMPLETE, refresh.getLastJobStatus());
+    assertEquals(lastFiredAt, refresh.getLastFiredAt());
+    assertNull(refresh.getNextFireAt());
+  }
+
+  @Test
+  void configured_schedules_are_registered_and_build_their_job_from_json() {
+    // Arrange
+    ReflectionTestUtils.setField(
+        scheduler,
+        "env",
+        new MockEnvironment()
+            .withProperty("app.jobs.schedules.test.cron", "0 0 * * * *")
+            .withProperty("app.jobs.schedules.test.type", TestJob.class.getName())
+            .withProperty("app.jobs.schedules.test.params", "{\"fail\":true,\"sleepMs\":5}")
+            .withProperty("app.jobs.schedules.broken.cron", "0 0 * * * *")
+            .withProperty("app.jobs.schedules.broken.type", "no.such.Job"));
+    when(jobSchedulesRepository.findByNameForUpdate("test"))
+        .thenReturn(Optional.of(JobSchedule.builder().name("test").build()));
+    when(jobService.createJob(any())).thenReturn(Job.builder().id(4L).build());
+
+    // Act
+    scheduler.registerConfiguredSchedules();
+    scheduler.trigger("test");
+
+    // Assert
+    assertEquals(List.of("test"), scheduler.listSchedules().stream().map(JobScheduleInfo::getName).toList());
+    ArgumentCaptor<JobContextConsumer> job = ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(jobService).createJob(job.capture());
+    TestJob testJob = (TestJob) job.getValue();
+    assertTrue(testJob.getFail());
+    assertEquals(5, testJob.getSleepMs());
+  }
+}
@@ -0,0 +1,836 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobStatus;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.IdempotencyKeyConflictException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobMetrics;
+import edu.ucsb.cs156.example.models.JobTypeMetrics;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @Mock private JobEventPublisher jobEventPublisher;
+
+  @Mock private JobService self;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Mock private FairShareDispatcher fairShareDispatcher;
+
+  @Spy private JobMetricsRecorder jobMetrics = new JobMetricsRecorder();
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(jobService, "env", new MockEnvironment());
+    when(jobLogLinesRepository.findMaxSeqByJobId(any(Long.class))).thenReturn(Optional.empty());
+  }
+
+  /** Runs a job that sleeps until it is interrupted on its own thread, as the executor would. */
+  private Thread startSleepingJob(Job job) throws Exception {
+    Thread runner =
+        new Thread(() -> jobService.runJobAsync(job, ctx -> Thread.sleep(60_000)));
+    runner.start();
+    await().until(() -> jobService.runningJobIds().contains(job.getId()));
+    return runner;
+  }
+
+  private String lastLoggedMessage() {
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository).save(line.capture());
+    return line.getValue().getMessage();
+  }
+
+  @Test
+  void runAsJob_rejects_with_queue_depth_when_executor_is_full() {
+    // Arrange
+    JobContextConsumer jobFunction = ctx -> {};
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(Job.class), eq(jobFunction));
+    when(jobExecutor.getQueueSize()).thenReturn(100);
+
+    // Act
+    JobQueueFullException e =
+        assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(jobFunction));
+
+    // Assert
+    assertEquals(100, e.getQueueDepth());
+    ArgumentCaptor<Job> job = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(2)).save(job.capture());
+    assertEquals(JobStatus.ERROR, job.getValue().getStatus());
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository).save(line.capture());
+    assertEquals("Job rejected: job queue is full (100 jobs waiting)", line.getValue().getMessage());
+    assertEquals(
+        Map.of("rejected", 1L),
+        jobMetrics.snapshot().get("JobServiceTests$$Lambda").getOutcomes());
+    verify(jobEventPublisher).publishStatus(0L, JobStatus.RUNNING);
+    verify(jobEventPublisher).publishStatus(0L, JobStatus.ERROR);
+  }
+
+  @Test
+  void runAsJob_in_durable_mode_queues_job_as_json() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DURABLE_QUEUE);
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(10).build();
+
+    // Act
+    Job job = jobService.runAsJob(testJob);
+
+    // Assert
+    assertEquals(JobStatus.PENDING, job.getStatus());
+    assertEquals(TestJob.class.getName(), job.getJobType());
+    assertEquals("{\"fail\":true,\"sleepMs\":10}", job.getJobParams());
+    verify(jobsRepository).save(job);
+    verify(self, never()).runJobAsync(any(), any());
+    verify(jobEventPublisher).publishStatus(0L, JobStatus.PENDING);
+  }
+
+  @Test
+  void runAsJob_in_durable_mode_runs_lambdas_in_memory() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DURABLE_QUEUE);
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Assert
+    assertEquals(JobStatus.RUNNING, job.getStatus());
+    assertNull(job.getJobType());
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void only_named_job_classes_are_queueable() {
+    assertTrue(JobService.isQueueable(TestJob.builder().build()));
+    assertFalse(JobService.isQueueable(ctx -> {}));
+    assertFalse(
+        JobService.isQueueable(
+            new JobContextConsumer() {
+              @Override
+              public void accept(JobContext c) {}
+            }));
+  }
+
+  @Test
+  void cancelJob_interrupts_a_job_running_on_this_node() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(3L).status(JobStatus.RUNNING).build();
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of(JobStatus.RUNNING));
+    Thread runner = startSleepingJob(job);
+
+    // Act
+    String message = jobService.cancelJob(3L);
+    runner.join(10_000);
+
+    // Assert
+    assertEquals("Cancellation of job 3 requested", message);
+    assertFalse(runner.isAlive());
+    assertEquals(JobStatus.CANCELLED, job.getStatus());
+    assertEquals("Job cancelled", lastLoggedMessage());
+    verify(jobsRepository).save(job);
+    verify(jobEventPublisher).publishStatus(3L, JobStatus.CANCELLED);
+    verify(jobLogCompressor).archive(3L);
+    verify(jobsRepository, never()).requestCancel(any(Long.class));
+  }
+
+  @Test
+  void shutdown_returns_queued_jobs_to_the_queue_and_leaves_jobs_run_in_memory() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "shutdownGraceMs", 10_000L);
+    Job queued =
+        Job.builder().id(3L).status(JobStatus.RUNNING).jobType("t").workerId("worker-1").build();
+    Job inMemory = Job.builder().id(4L).status(JobStatus.RUNNING).build();
+    Thread queuedRunner = startSleepingJob(queued);
+    Thread inMemoryRunner = startSleepingJob(inMemory);
+
+    // Act
+    jobService.requeueQueuedJobsOnShutdown();
+    queuedRunner.join(10_000);
+
+    // Assert
+    assertFalse(queuedRunner.isAlive());
+    assertEquals(JobStatus.PENDING, queued.getStatus());
+    verify(jobsRepository).release(3L, "worker-1");
+    verify(jobsRepository, never()).save(queued);
+    verify(jobEventPublisher).publishStatus(3L, JobStatus.PENDING);
+    assertTrue(inMemoryRunner.isAlive());
+    assertEquals(Set.of(4L), jobService.runningJobIds());
+    jobService.cancelLocally(4L, "Job cancelled");
+    inMemoryRunner.join(10_000);
+  }
+
+  @Test
+  void ownedJobIds_include_jobs_waiting_for_a_worker_until_they_are_rejected() {
+    // Arrange
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Assert
+    assertEquals(Set.of(job.getId()), jobService.ownedJobIds());
+    assertTrue(jobService.runningJobIds().isEmpty());
+
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(Job.class), eq(jobFunction));
+    assertThrows(JobQueueFullException.class, () -> jobService.startJob(job, jobFunction));
+    assertTrue(jobService.ownedJobIds().isEmpty());
+  }
+
+  @Test
+  void runJobAsync_resumes_job_from_its_checkpoint() {
+    // Arrange
+    ZonedDateTime checkpointAt = ZonedDateTime.parse("2030-01-01T00:00:00Z");
+    Job job = Job.builder().id(5L).checkpoint("item 3").checkpointAt(checkpointAt).build();
+    AtomicReference<String> resumedFrom = new AtomicReference<>();
+
+    // Act
+    jobService.runJobAsync(job, ctx -> resumedFrom.set(ctx.getCheckpoint()));
+
+    // Assert
+    assertEquals("item 3", resumedFrom.get());
+    assertEquals(JobStatus.COMPLETE, job.getStatus());
+    assertEquals(
+        "Resuming from checkpoint saved at 2030-01-01T00:00Z", lastLoggedMessage());
+  }
+
+  @Test
+  void enforceJobLimits_stops_jobs_past_their_timeout_with_error() throws Exception {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 1L);
+    Job job = Job.builder().id(4L).status(JobStatus.RUNNING).build();
+    Thread runner = startSleepingJob(job);
+
+    // Act
+    await()
+        .until(
+            () -> {
+              jobService.enforceJobLimits();
+              return !runner.isAlive();
+            });
+
+    // Assert
+    assertEquals(JobStatus.ERROR, job.getStatus());
+    assertEquals("Job timed out", lastLoggedMessage());
+  }
+
+  @Test
+  void enforceJobLimits_stops_jobs_cancelled_through_another_node() throws Exception {
+    // Arrange
+    Job job = Job.builder().id(6L).status(JobStatus.RUNNING).build();
+    when(jobsRepository.findCancelRequestedIds(Set.of(6L))).thenReturn(List.of(6L));
+    Thread runner = startSleepingJob(job);
+
+    // Act
+    jobService.enforceJobLimits();
+    runner.join(10_000);
+
+    // Assert
+    assertEquals(JobStatus.CANCELLED, job.getStatus());
+  }
+
+  @Test
+  void enforceJobLimits_does_nothing_when_no_jobs_are_running() {
+    jobService.enforceJobLimits();
+    verify(jobsRepository, never()).findCancelRequestedIds(any());
+  }
+
+  @Test
+  void cancelJob_cancels_pending_jobs_straight_away() {
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of(JobStatus.PENDING));
+    when(jobsRepository.cancelPending(8L)).thenReturn(1);
+
+    assertEquals("Job 8 cancelled", jobService.cancelJob(8L));
+    verify(jobEventPublisher).publishStatus(8L, JobStatus.CANCELLED);
+  }
+
+  @Test
+  void cancelJob_cancels_jobs_waiting_for_their_turn_straight_away() {
+    // Arrange
+    Job waiting = Job.builder().id(5L).status(JobStatus.RUNNING).build();
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of(JobStatus.RUNNING));
+    when(fairShareDispatcher.remove(eq(5L), any()))
+        .thenAnswer(
+            invocation -> {
+              invocation.<Consumer<Job>>getArgument(1).accept(waiting);
+              return true;
+            });
+
+    // Act
+    jobService.cancelJob(5L);
+
+    // Assert
+    assertEquals(JobStatus.CANCELLED, waiting.getStatus());
+    assertEquals(List.of("Job cancelled"), loggedMessages(5L));
+    verify(jobsRepository).save(waiting);
+    verify(jobEventPublisher).publishStatus(5L, JobStatus.CANCELLED);
+    verify(jobsRepository, never()).requestCancel(5L);
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  void cancelJob_flags_jobs_running_on_other_nodes() {
+    when(jobsRepository.findStatusById(9L)).thenReturn(Optional.of(JobStatus.RUNNING));
+    when(jobsRepository.requestCancel(9L)).thenReturn(1);
+
+    assertEquals("Cancellation of job 9 requested", jobService.cancelJob(9L));
+    verify(jobsRepository).requestCancel(9L);
+  }
+
+  @Test
+  void cancelJob_leaves_finished_jobs_alone() {
+    when(jobsRepository.findStatusById(10L)).thenReturn(Optional.of(JobStatus.COMPLETE));
+
+    assertEquals("Job 10 is not running (status complete)", jobService.cancelJob(10L));
+    verify(jobsRepository, never()).cancelPending(10L);
+  }
+
+  @Test
+  void cancelJob_throws_when_job_does_not_exist() {
+    when(jobsRepository.findStatusById(11L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> jobService.cancelJob(11L));
+  }
+
+  @Test
+  void timeoutMs_uses_per_type_setting_then_default() {
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 5000L);
+    ReflectionTestUtils.setField(
+        jobService, "env", new MockEnvironment().withProperty("app.jobs.timeout-ms.TestJob", "600000"));
+
+    assertEquals(600_000L, jobService.timeoutMs(TestJob.builder().build()));
+    assertEquals(5000L, jobService.timeoutMs(ctx -> {}));
+  }
+
+  @Test
+  void runJobAsync_records_queue_wait_run_time_and_outcome() {
+    // Arrange
+    Job job =
+        Job.builder()
+            .id(12L)
+            .status(JobStatus.RUNNING)
+            .createdAt(ZonedDateTime.now().minusSeconds(2))
+            .build();
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(20).build();
+
+    // Act
+    jobService.runJobAsync(job, testJob);
+
+    // Assert
+    JobTypeMetrics metrics = jobMetrics.snapshot().get("TestJob");
+    assertEquals(Map.of("error", 1L), metrics.getOutcomes());
+    assertEquals(1, metrics.getQueueWait().getCount());
+    assertTrue(metrics.getQueueWait().getMaxMs() >= 2000);
+    assertEquals(1, metrics.getRunTime().getCount());
+    assertTrue(metrics.getRunTime().getMaxMs() >= 20);
+  }
+
+  @Test
+  void getMetrics_reports_running_queued_and_pending_jobs() {
+    when(jobExecutor.getQueueSize()).thenReturn(4);
+    when(jobsRepository.countByStatus(JobStatus.PENDING)).thenReturn(9L);
+
+    JobMetrics metrics = jobService.getMetrics();
+
+    assertEquals(0, metrics.getRunning());
+    assertEquals(4, metrics.getQueued());
+    assertEquals(9, metrics.getPending());
+    assertTrue(metrics.getTypes().isEmpty());
+  }
+
+  @Test
+  void job_types_are_simple_class_names_or_lambda_sites() {
+    assertEquals("TestJob", JobMetricsRecorder.jobType(TestJob.builder().build()));
+    assertEquals("JobServiceTests$$Lambda", JobMetricsRecorder.jobType(ctx -> {}));
+  }
+
+  @Test
+  void runJobAsync_still_finishes_job_when_compressing_its_log_fails() {
+    // Arrange
+    Job job = Job.builder().id(13L).status(JobStatus.RUNNING).build();
+    doThrow(new IllegalStateException("disk full")).when(jobLogCompressor).archive(13L);
+
+    // Act
+    jobService.runJobAsync(job, ctx -> ctx.log("hello"));
+
+    // Assert
+    assertEquals(JobStatus.COMPLETE, job.getStatus());
+    verify(jobsRepository).save(job);
+    verify(jobEventPublisher).publishStatus(13L, JobStatus.COMPLETE);
+  }
+
+  @Test
+  void createJob_saves_pending_job_for_startJob_to_run() {
+    // Arrange
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.createJob(jobFunction);
+
+    // Assert
+    assertEquals(JobStatus.PENDING, job.getStatus());
+    verify(self, never()).runJobAsync(any(), any());
+    verify(jobEventPublisher).publishStatus(0L, JobStatus.PENDING);
+
+    jobService.startJob(job, jobFunction);
+    assertEquals(JobStatus.RUNNING, job.getStatus());
+    verify(jobsRepository, times(2)).save(job);
+    verify(jobEventPublisher).publishStatus(0L, JobStatus.RUNNING);
+    verify(self).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  void createJob_in_durable_mode_queues_job() {
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DURABLE_QUEUE);
+
+    Job job = jobService.createJob(TestJob.builder().build());
+
+    assertEquals(JobStatus.PENDING, job.getStatus());
+    assertEquals(TestJob.class.getName(), job.getJobType());
+  }
+
+  /** Makes jobsRepository.save assign ids, and runs the steps of pipelines on threads of their own. */
+  private void runStepsOnThreads() {
+    AtomicLong nextId = new AtomicLong(1);
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              if (job.getId() == 0) {
+                job.setId(nextId.getAndIncrement());
+              }
+              return job;
+            });
+    when(jobsRepository.startPending(any(Long.class))).thenReturn(1);
+    when(self.runJobAsync(any(Job.class), any()))
+        .thenAnswer(
+            invocation ->
+                CompletableFuture.supplyAsync(
+                        () ->
+                            jobService.runJobAsync(
+                                invocation.getArgument(0), invocation.getArgument(1)))
+                    .thenCompose(future -> future));
+  }
+
+  private List<String> loggedMessages(long jobId) {
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(jobLogLinesRepository, atLeast(0)).save(line.capture());
+    return line.getAllValues().stream()
+        .filter(l -> l.getJobId() == jobId)
+        .map(JobLogLine::getMessage)
+        .toList();
+  }
+
+  @Test
+  void runPipeline_starts_each_step_once_its_dependencies_complete() {
+    // Arrange
+    runStepsOnThreads();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        JobPipeline.builder()
+            .step("a", ctx -> ran.add("a"))
+            .step("b", ctx -> ran.add("b"), "a")
+            .step("c", ctx -> ran.add("c"), "a")
+            .step("d", ctx -> ran.add("d"), "b", "c")
+            .build();
+
+    // Act
+    Job parent = jobService.runPipeline(pipeline);
+
+    // Assert
+    await().until(() -> parent.getStatus() == JobStatus.COMPLETE);
+    assertEquals(4, ran.size());
+    assertEquals("a", ran.get(0));
+    assertEquals("d", ran.get(3));
+    assertEquals("Pipeline complete", loggedMessages(1L).getLast());
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, atLeast(1)).save(saved.capture());
+    List<Job> steps =
+        saved.getAllValues().stream()
+            .filter(job -> job.getParentJobId() != null)
+            .distinct()
+            .toList();
+    assertEquals(List.of("a", "b", "c", "d"), steps.stream().map(Job::getStepName).toList());
+    assertTrue(steps.stream().allMatch(job -> job.getParentJobId() == 1L));
+    assertTrue(steps.stream().allMatch(job -> job.getStatus() == JobStatus.COMPLETE));
+    assertFalse(jobService.cancelLocally(1L, "too late"));
+  }
+
+  @Test
+  void runPipeline_skips_steps_that_depend_on_a_failed_step() {
+    // Arrange
+    runStepsOnThreads();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        JobPipeline.builder()
+            .step("a", ctx -> ran.add("a"))
+            .step(
+                "b",
+                ctx -> {
+                  throw new Exception("b failed");
+                },
+                "a")
+            .step("c", ctx -> ran.add("c"), "a")
+            .step("d", ctx -> ran.add("d"), "b", "c")
+            .build();
+
+    // Act
+    Job parent = jobService.runPipeline(pipeline);
+
+    // Assert
+    await().until(() -> parent.getStatus() == JobStatus.ERROR);
+    assertEquals(Set.of("a", "c"), Set.copyOf(ran));
+    assertEquals(List.of("b failed"), loggedMessages(3L));
+    assertEquals(List.of("Step d skipped: step b is error"), loggedMessages(5L));
+    List<String> parentLog = loggedMessages(1L);
+    assertTrue(parentLog.contains("Step b error (job 3)"));
+    assertTrue(parentLog.contains("Step d cancelled (job 5)"));
+    assertEquals("Pipeline error", parentLog.getLast());
+  }
+
+  @Test
+  void cancelJob_stops_running_steps_of_a_pipeline_and_skips_the_rest() {
+    // Arrange
+    runStepsOnThreads();
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        JobPipeline.builder()
+            .step("a", ctx -> Thread.sleep(60_000))
+            .step("b", ctx -> ran.add("b"), "a")
+            .build();
+    Job parent = jobService.runPipeline(pipeline);
+    await().until(() -> jobService.runningJobIds().contains(2L));
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of(JobStatus.RUNNING));
+
+    // Act
+    String message = jobService.cancelJob(1L);
+
+    // Assert
+    assertEquals("Cancellation of job 1 requested", message);
+    await().until(() -> parent.getStatus() == JobStatus.CANCELLED);
+    assertEquals(List.of(), ran);
+    assertEquals(List.of("Job cancelled"), loggedMessages(2L));
+    assertEquals(List.of("Step b skipped: step a is cancelled"), loggedMessages(3L));
+    assertEquals("Pipeline cancelled", loggedMessages(1L).getLast());
+  }
+
+  @Test
+  void cancelJob_of_a_step_waiting_on_its_dependencies_keeps_it_from_starting() throws Exception {
+    // Arrange
+    runStepsOnThreads();
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        JobPipeline.builder()
+            .step("a", ctx -> release.await())
+            .step("b", ctx -> ran.add("b"), "a")
+            .step("c", ctx -> ran.add("c"), "b")
+            .build();
+    Job parent = jobService.runPipeline(pipeline);
+    await().until(() -> jobService.runningJobIds().contains(2L));
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of(JobStatus.PENDING));
+    when(jobsRepository.cancelPending(3L)).thenReturn(1);
+    when(jobsRepository.startPending(3L)).thenReturn(0);
+
+    // Act
+    String message = jobService.cancelJob(3L);
+    release.countDown();
+
+    // Assert
+    assertEquals("Job 3 cancelled", message);
+    await().until(() -> parent.getStatus().isFinished());
+    assertEquals(List.of(), ran);
+    verify(self, times(1)).runJobAsync(any(), any());
+    List<String> parentLog = loggedMessages(1L);
+    assertTrue(parentLog.contains("Step b cancelled (job 3)"));
+    assertFalse(parentLog.contains("Step b started (job 3)"));
+    assertEquals(List.of("Step c skipped: step b is cancelled"), loggedMessages(4L));
+  }
+
+  @Test
+  void runAsJob_with_idempotency_key_returns_running_job_with_the_same_key() {
+    // Arrange
+    TestJob testJob = TestJob.builder().sleepMs(10).build();
+    Job running =
+        Job.builder()
+            .id(7L)
+            .status(JobStatus.RUNNING)
+            .idempotencyKey("k")
+            .requestHash(jobService.requestHash(testJob))
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "k"))
+        .thenReturn(Optional.of(running));
+
+    // Act
+    Job job = jobService.runAsJob(TestJob.builder().sleepMs(10).build(), "k");
+
+    // Assert
+    assertEquals(running, job);
+    verify(jobsRepository, never()).save(any());
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  void runAsJob_scopes_idempotency_keys_to_the_submitting_user() {
+    // Arrange
+    TestJob testJob = TestJob.builder().build();
+    User alice = User.builder().id(1L).build();
+    User bob = User.builder().id(2L).build();
+    Job alicesJob =
+        Job.builder()
+            .id(7L)
+            .createdBy(alice)
+            .status(JobStatus.RUNNING)
+            .idempotencyKey("k")
+            .requestHash(jobService.requestHash(testJob))
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(1L, "k"))
+        .thenReturn(Optional.of(alicesJob));
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(2L, "k")).thenReturn(Optional.empty());
+
+    // Act
+    when(currentUserService.getUser()).thenReturn(alice);
+    Job alicesRetry = jobService.runAsJob(testJob, "k");
+    when(currentUserService.getUser()).thenReturn(bob);
+    Job bobsJob = jobService.runAsJob(testJob, "k");
+
+    // Assert
+    assertEquals(alicesJob, alicesRetry);
+    assertEquals(bob, bobsJob.getCreatedBy());
+    assertEquals("k", bobsJob.getIdempotencyKey());
+    verify(self).runJobAsync(bobsJob, testJob);
+    verify(self, never()).runJobAsync(eq(alicesJob), any());
+  }
+
+  @Test
+  void runAsJob_rejects_idempotency_key_reused_with_different_parameters() {
+    // Arrange
+    Job running =
+        Job.builder()
+            .id(7L)
+            .status(JobStatus.RUNNING)
+            .idempotencyKey("k")
+            .requestHash(jobService.requestHash(TestJob.builder().sleepMs(10).build()))
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "k"))
+        .thenReturn(Optional.of(running));
+
+    // Act
+    IdempotencyKeyConflictException e =
+        assertThrows(
+            IdempotencyKeyConflictException.class,
+            () -> jobService.runAsJob(TestJob.builder().sleepMs(20).build(), "k"));
+
+    // Assert
+    assertEquals(7L, e.getJobId());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void runAsJob_identifies_lambda_jobs_by_their_idempotency_key_alone() {
+    // Arrange
+    JobContextConsumer first = ctx -> ctx.log("first");
+    JobContextConsumer retry = ctx -> ctx.log("retry");
+    Job running = Job.builder().id(7L).status(JobStatus.RUNNING).idempotencyKey("k").build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "k"))
+        .thenReturn(Optional.of(running));
+
+    // Act
+    Job job = jobService.runAsJob(retry, "k");
+
+    // Assert
+    assertNull(jobService.requestHash(first));
+    assertNull(jobService.requestHash(retry));
+    assertEquals(running, job);
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void requestHash_of_a_job_class_is_its_name_and_parameters() {
+    assertEquals(
+        jobService.requestHash(TestJob.builder().sleepMs(10).build()),
+        jobService.requestHash(TestJob.builder().sleepMs(10).build()));
+    assertNotEquals(
+        jobService.requestHash(TestJob.builder().sleepMs(10).build()),
+        jobService.requestHash(TestJob.builder().sleepMs(20).build()));
+  }
+
+  @Test
+  void runAsJob_starts_new_job_when_job_with_the_key_finished_before_the_window() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "idempotencyWindowMs", 60_000L);
+    TestJob testJob = TestJob.builder().build();
+    String requestHash = jobService.requestHash(testJob);
+    Job recent =
+        Job.builder()
+            .id(7L)
+            .status(JobStatus.COMPLETE)
+            .updatedAt(ZonedDateTime.now().minusSeconds(30))
+            .requestHash(requestHash)
+            .build();
+    Job old =
+        Job.builder()
+            .id(8L)
+            .status(JobStatus.ERROR)
+            .updatedAt(ZonedDateTime.now().minusMinutes(2))
+            .requestHash(requestHash)
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "recent"))
+        .thenReturn(Optional.of(recent));
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "old"))
+        .thenReturn(Optional.of(old));
+
+    // Act
+    Job reused = jobService.runAsJob(testJob, "recent");
+    Job started = jobService.runAsJob(testJob, "old");
+
+    // Assert
+    assertEquals(recent, reused);
+    verify(jobsRepository).releaseIdempotencyKey(8L, "old");
+    assertEquals(JobStatus.RUNNING, started.getStatus());
+    assertEquals("old", started.getIdempotencyKey());
+    assertEquals(requestHash, started.getRequestHash());
+    verify(self).runJobAsync(started, testJob);
+  }
+
+  @Test
+  void runAsJob_reuses_an_expired_key_for_different_parameters() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "idempotencyWindowMs", 60_000L);
+    Job old =
+        Job.builder()
+            .id(8L)
+            .status(JobStatus.COMPLETE)
+            .updatedAt(ZonedDateTime.now().minusMinutes(2))
+            .idempotencyKey("k")
+            .requestHash(jobService.requestHash(TestJob.builder().sleepMs(10).build()))
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "k"))
+        .thenReturn(Optional.of(old));
+    TestJob testJob = TestJob.builder().sleepMs(20).build();
+
+    // Act
+    Job started = jobService.runAsJob(testJob, "k");
+
+    // Assert
+    verify(jobsRepository).releaseIdempotencyKey(8L, "k");
+    assertEquals("k", started.getIdempotencyKey());
+    assertEquals(jobService.requestHash(testJob), started.getRequestHash());
+    verify(self).runJobAsync(started, testJob);
+  }
+
+  @Test
+  void runAsJob_returns_job_of_a_concurrent_submission_that_saved_the_key_first() {
+    // Arrange
+    TestJob testJob = TestJob.builder().build();
+    Job winner =
+        Job.builder()
+            .id(7L)
+            .status(JobStatus.RUNNING)
+            .idempotencyKey("k")
+            .requestHash(jobService.requestHash(testJob))
+            .build();
+    when(jobsRepository.findByCreatedByIdAndIdempotencyKey(null, "k"))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(winner));
+    when(jobsRepository.save(any(Job.class)))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    // Act
+    Job job = jobService.runAsJob(testJob, "k");
+
+    // Assert
+    assertEquals(winner, job);
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  void runAsJob_in_fair_share_mode_hands_job_to_the_dispatcher() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "scheduling", JobService.FAIR_SHARE);
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // Act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // Assert
+    verify(fairShareDispatcher).submit(job, jobFunction);
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  void runAsJob_in_fair_share_mode_rejects_job_when_dispatcher_is_full() {
+    // Arrange
+    ReflectionTestUtils.setField(jobService, "scheduling", JobService.FAIR_SHARE);
+    JobContextConsumer jobFunction = ctx -> {};
+    when(fairShareDispatcher.submit(any(), eq(jobFunction)))
+        .thenThrow(new JobQueueFullException(100));
+    when(fairShareDispatcher.queuedCount()).thenReturn(100);
+
+    // Act
+    JobQueueFullException e =
+        assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(jobFunction));
+
+    // Assert
+    assertEquals(100, e.getQueueDepth());
+    assertEquals("Job rejected: job queue is full (100 jobs waiting)", lastLoggedMessage());
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.models.HistogramSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTests {
+
+  @Test
+  void small_values_have_exact_buckets_and_large_ones_are_within_an_eighth() {
+    for (long value = 0; value < 16; value++) {
+      assertEquals(value, LatencyHistogram.upperBound(LatencyHistogram.bucket(value)));
+    }
+    for (long value : new long[] {16, 17, 31, 32, 100, 1000, 123_456_789L, Long.MAX_VALUE}) {
+      long upper = LatencyHistogram.upperBound(LatencyHistogram.bucket(value));
+      assertTrue(upper >= value, "upper bound of " + value);
+      assertTrue(upper - value <= value / 8, "error for " + value);
+    }
+  }
+
+  @Test
+  void snapshot_reports_count_mean_percentiles_and_max() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int value = 1; value <= 100; value++) {
+      histogram.record(value);
+    }
+    histogram.record(-5);
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+
+    assertEquals(101, snapshot.getCount());
+    assertEquals(5050.0 / 101, snapshot.getMeanMs(), 1e-9);
+    assertEquals(51, snapshot.getP50Ms());
+    assertEquals(95, snapshot.getP90Ms()); // bucket 88..95 holds the 90th value
+    assertEquals(100, snapshot.getP99Ms());
+    assertEquals(100, snapshot.getMaxMs());
+  }
+
+  @Test
+  void empty_snapshot_is_all_zero() {
+    assertEquals(
+        HistogramSnapshot.builder().build(), new LatencyHistogram().snapshot());
+  }
+
+  @Test
+  void concurrent_records_are_all_counted() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      threads.add(
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    for (int i = 0; i < 10_000; i++) {
+                      histogram.record(i % 500);
+                    }
+                  }));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80_000, histogram.getCount());
+    assertEquals(80_000, histogram.snapshot().getCount());
+    assertEquals(499, histogram.snapshot().getMaxMs());
+  }
+}